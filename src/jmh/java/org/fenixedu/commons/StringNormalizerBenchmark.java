@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link StringNormalizer} over the kinds of <code>input</code> it sees: plain ASCII identifiers, Portuguese names with
+ * accents, a long Portuguese paragraph and non-Latin scripts. The results are compared against the baseline in
+ * <code>src/jmh/baseline</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StringNormalizerBenchmark {
+
+    private static final String PARAGRAPH = "O Mestrado em Engenharia Informática e de Computadores prepara profissionais "
+            + "com uma formação sólida nas áreas da computação, da programação e da gestão de sistemas de informação. "
+            + "Os alunos aprofundam conhecimentos em Álgebra, Análise Matemática e Física, e escolhem depois uma "
+            + "especialização: Inteligência Artificial, Segurança Informática, Computação Gráfica ou Sistemas Distribuídos. "
+            + "A dissertação, desenvolvida em ligação com grupos de investigação ou com a indústria, é o culminar do curso.";
+
+    @Param({ "ascii", "portuguese", "paragraph", "nonLatin" })
+    public String input;
+
+    private String text;
+
+    private final StringBuilder builder = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        switch (input) {
+        case "ascii":
+            text = "Joao Pedro Silva ist1234567";
+            break;
+        case "portuguese":
+            text = "João Conceição Gonçalves Araújo";
+            break;
+        case "paragraph":
+            text = PARAGRAPH;
+            break;
+        case "nonLatin":
+            text = "Ελληνικά Русский язык 日本語のテキスト";
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    @Benchmark
+    public String normalize() {
+        return StringNormalizer.normalize(text);
+    }
+
+    @Benchmark
+    public String normalizeAndRemoveAccents() {
+        return StringNormalizer.normalizeAndRemoveAccents(text);
+    }
+
+    @Benchmark
+    public String normalizePreservingCapitalizedLetters() {
+        return StringNormalizer.normalizePreservingCapitalizedLetters(text);
+    }
+
+    @Benchmark
+    public String slugify() {
+        return StringNormalizer.slugify(text);
+    }
+
+    @Benchmark
+    public StringBuilder normalizeIntoBuilder() {
+        builder.setLength(0);
+        return StringNormalizer.normalize(text, builder);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Single {@link LocalizedString} operations: each branch of the {@link LocalizedString#getContent(Locale)} fallback strategy,
+ * building, json conversion and equality. The thread's {@link Locale} is en-GB.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LocalizedStringBenchmark {
+
+    private static final Locale pt = Locale.forLanguageTag("pt");
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale ptBR = Locale.forLanguageTag("pt-BR");
+    private static final Locale ptAO = Locale.forLanguageTag("pt-AO");
+    private static final Locale en = Locale.forLanguageTag("en");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+    private static final Locale esES = Locale.forLanguageTag("es-ES");
+    private static final Locale frFR = Locale.forLanguageTag("fr-FR");
+
+    private LocalizedString hello;
+    private LocalizedString helloCopy;
+    private LocalizedString goodbye;
+    private LocalizedString generic;
+    private LocalizedString ambiguous;
+    private LocalizedString spanish;
+    private LocalizedString name;
+    private JsonElement json;
+
+    @Setup
+    public void setup() {
+        I18N.setLocale(enGB);
+        hello = new LocalizedString.Builder().with(ptPT, "Olá").with(enGB, "Hello").build();
+        helloCopy = new LocalizedString.Builder().with(enGB, new String("Hello")).with(ptPT, new String("Olá")).build();
+        goodbye = new LocalizedString.Builder().with(ptPT, "Adeus").with(enGB, "Goodbye").build();
+        generic = new LocalizedString.Builder().with(pt, "Olá").with(en, "Hello").build();
+        ambiguous = new LocalizedString.Builder().with(ptPT, "Olá").with(ptAO, "Olá").with(enGB, "Hello").build();
+        spanish = new LocalizedString(esES, "Hola");
+        name = new LocalizedString.Builder().with(ptPT, "Mestrado em Engenharia Informática")
+                .with(enGB, "Master in Computer Science and Engineering").build();
+        json = name.json();
+    }
+
+    @Benchmark
+    public String getContentExact() {
+        return hello.getContent(ptPT);
+    }
+
+    @Benchmark
+    public String getContentGeneric() {
+        return generic.getContent(ptPT);
+    }
+
+    @Benchmark
+    public String getContentSameLanguage() {
+        return hello.getContent(ptBR);
+    }
+
+    @Benchmark
+    public String getContentAmbiguous() {
+        return ambiguous.getContent(ptBR);
+    }
+
+    @Benchmark
+    public String getContentThreadLocale() {
+        return hello.getContent(frFR);
+    }
+
+    @Benchmark
+    public String getContentMissing() {
+        return spanish.getContent(frFR);
+    }
+
+    @Benchmark
+    public String getContent() {
+        return hello.getContent();
+    }
+
+    @Benchmark
+    public String getContentFirst() {
+        return spanish.getContent();
+    }
+
+    @Benchmark
+    public LocalizedString builderWith() {
+        return new LocalizedString.Builder().with(ptPT, "Olá").with(enGB, "Hello").build();
+    }
+
+    @Benchmark
+    public LocalizedString builderAppend() {
+        return hello.builder().append(", ").append(name).append("!").build();
+    }
+
+    @Benchmark
+    public LocalizedString with() {
+        return hello.with(esES, "Hola");
+    }
+
+    @Benchmark
+    public JsonElement json() {
+        return name.json();
+    }
+
+    @Benchmark
+    public LocalizedString fromJson() {
+        return LocalizedString.fromJson(json);
+    }
+
+    @Benchmark
+    public boolean equalsSame() {
+        return hello.equals(helloCopy);
+    }
+
+    @Benchmark
+    public boolean equalsDifferent() {
+        return hello.equals(goodbye);
+    }
+
+    @Benchmark
+    public int hashCodeFresh() {
+        return new LocalizedString.Builder().with(ptPT, "Olá").with(enGB, "Hello").build().hashCode();
+    }
+}
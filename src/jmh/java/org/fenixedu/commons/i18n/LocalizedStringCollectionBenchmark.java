@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operations over lists of {@link LocalizedString}s, shaped like course names: sorting and grouping, where hashCode, equals and
+ * compareTo dominate. Each list holds <code>size</code> strings with <code>distinct</code> different values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LocalizedStringCollectionBenchmark {
+
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+
+    private static final String[][] WORDS = { { "Análise", "Analysis" }, { "Sistemas", "Systems" },
+            { "Engenharia", "Engineering" }, { "Programação", "Programming" }, { "Álgebra", "Algebra" },
+            { "Física", "Physics" }, { "Gestão", "Management" }, { "Redes", "Networks" } };
+
+    @Param({ "10000" })
+    public int size;
+
+    @Param({ "100", "5000" })
+    public int distinct;
+
+    private List<LocalizedString> strings;
+
+    private List<String> json;
+
+    @Setup
+    public void setup() {
+        I18N.setLocale(enGB);
+        Random random = new Random(42);
+        strings = new ArrayList<>(size);
+        json = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int value = random.nextInt(distinct);
+            String[] word = WORDS[value % WORDS.length];
+            LocalizedString string = new LocalizedString.Builder().with(ptPT, word[0] + " " + value)
+                    .with(enGB, word[1] + " " + value).build();
+            strings.add(string);
+            json.add(string.json().toString());
+        }
+    }
+
+    @Benchmark
+    public List<LocalizedString> sortCompareTo() {
+        List<LocalizedString> sorted = new ArrayList<>(strings);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    public List<LocalizedString> sortWithLocale() {
+        List<LocalizedString> sorted = new ArrayList<>(strings);
+        LocalizedString.sort(sorted, enGB);
+        return sorted;
+    }
+
+    @Benchmark
+    public Map<LocalizedString, Integer> group() {
+        Map<LocalizedString, Integer> counts = new HashMap<>();
+        for (LocalizedString string : strings) {
+            counts.merge(string, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public Map<LocalizedString, Integer> groupFromJson() {
+        // Fresh instances, as when loading from the database, so hash codes are computed every time
+        Map<LocalizedString, Integer> counts = new HashMap<>();
+        for (String text : json) {
+            counts.merge(LocalizedString.lazyFromJson(text), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public int distinct() {
+        return new HashSet<>(strings).size();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.fenixedu.commons.StringNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Autocompletion over <code>size</code> course-like names in two locales, with {@link LocalizedStringIndex} and with the linear
+ * scan it replaces.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LocalizedStringIndexBenchmark {
+
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+
+    private static final String[][] WORDS = { { "Análise", "Analysis" }, { "Sistemas", "Systems" },
+            { "Engenharia", "Engineering" }, { "Programação", "Programming" }, { "Álgebra", "Algebra" },
+            { "Física", "Physics" }, { "Gestão", "Management" }, { "Redes", "Networks" }, { "Química", "Chemistry" },
+            { "Biologia", "Biology" }, { "Matemática", "Mathematics" }, { "Computadores", "Computers" } };
+
+    @Param({ "100000" })
+    public int size;
+
+    @Param({ "a", "eng", "eng sis", "matem comp" })
+    public String query;
+
+    private List<LocalizedString> strings;
+
+    private LocalizedStringIndex<LocalizedString> index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String[] first = WORDS[random.nextInt(WORDS.length)];
+            String[] second = WORDS[random.nextInt(WORDS.length)];
+            String code = Integer.toString(i, 36);
+            strings.add(new LocalizedString.Builder().with(ptPT, first[0] + " e " + second[0] + " " + code)
+                    .with(enGB, first[1] + " and " + second[1] + " " + code).build());
+        }
+        index = LocalizedStringIndex.of(strings);
+    }
+
+    @Benchmark
+    public List<LocalizedString> search() {
+        return index.search(query, 10);
+    }
+
+    @Benchmark
+    public List<LocalizedString> searchLocale() {
+        return index.search(query, enGB, 10);
+    }
+
+    @Benchmark
+    public LocalizedString updateAndSearch() {
+        // Re-indexing a value leaves it pending, searched linearly, until the next rebuild
+        LocalizedString string = strings.get(query.length());
+        index.add(string);
+        index.search(query, 10);
+        return string;
+    }
+
+    /**
+     * Scan over every translation with {@link LocalizedString#anyMatch}, as done before the index.
+     */
+    @Benchmark
+    public List<LocalizedString> linearScan() {
+        String[] tokens = StringNormalizer.normalize(query).split(" ");
+        List<LocalizedString> results = new ArrayList<>();
+        for (LocalizedString string : strings) {
+            if (string.anyMatch(value -> {
+                String normalized = StringNormalizer.normalize(value);
+                for (String token : tokens) {
+                    if (!normalized.contains(token)) {
+                        return false;
+                    }
+                }
+                return true;
+            })) {
+                results.add(string);
+                if (results.size() == 10) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+}
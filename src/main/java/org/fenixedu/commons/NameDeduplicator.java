@@ -0,0 +1,411 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Finds groups of values, such as person records, whose names are likely the same, among a large number of values.
+ * </p>
+ *
+ * <p>
+ * Names are normalized with {@link StringNormalizer#normalize(String)} and split into words. Each value is put in a few blocks,
+ * identified by its sorted set of words, by Soundex-style codes of its first and last words, and by the sorted codes of all
+ * its words, so that reordered names and names with small typos share a block. Only values sharing a block are compared. In
+ * blocks larger than {@link #WINDOW} + 1 values, these are sorted by their words and each one is compared only with the next
+ * {@link #WINDOW}. The similarity of two names is the Jaccard similarity of their trigrams, as in {@link TrigramIndex}.
+ * </p>
+ *
+ * <p>
+ * Values whose similarity is at least the minimum score are linked, and each group of linked values is a {@link Cluster}.
+ * Preparing the values and comparing the blocks run in parallel in a {@link ForkJoinPool}.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * NameDeduplicator&lt;Person&gt; deduplicator = new NameDeduplicator&lt;&gt;(Person::getName, 0.7);
+ * for (NameDeduplicator.Cluster&lt;Person&gt; cluster : deduplicator.findDuplicates(importedPeople)) {
+ *     review(cluster.getValues(), cluster.getScore());
+ * }
+ * </code>
+ * </pre>
+ *
+ * @param <T> the type of the values
+ */
+public final class NameDeduplicator<T> {
+
+    /**
+     * Number of following values each value is compared with, in large blocks.
+     */
+    public static final int WINDOW = 50;
+
+    private static final int PREPARE_THRESHOLD = 1024;
+
+    private static final int COMPARE_THRESHOLD = 64 * WINDOW;
+
+    private final Function<? super T, String> extractor;
+
+    private final double minScore;
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param extractor the function returning the name of each value
+     * @param minScore the minimum similarity of two names to be considered the same, greater than 0 and at most 1
+     * @throws IllegalArgumentException if the minimum score is out of bounds
+     */
+    public NameDeduplicator(Function<? super T, String> extractor, double minScore) {
+        if (!(minScore > 0 && minScore <= 1)) {
+            throw new IllegalArgumentException("Minimum score must be in ]0, 1]: " + minScore);
+        }
+        this.extractor = Objects.requireNonNull(extractor);
+        this.minScore = minScore;
+    }
+
+    /**
+     * A group of values whose names are likely the same.
+     *
+     * @param <T> the type of the values
+     */
+    public static final class Cluster<T> {
+        private final List<T> values;
+        private final double score;
+
+        private Cluster(List<T> values, double score) {
+            this.values = Collections.unmodifiableList(values);
+            this.score = score;
+        }
+
+        /**
+         * @return the values, in their original order
+         */
+        public List<T> getValues() {
+            return values;
+        }
+
+        /**
+         * @return the lowest similarity among the links joining the values, from the minimum score to 1
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return values + " (" + score + ")";
+        }
+    }
+
+    /**
+     * Same as <code>findDuplicates(values, ForkJoinPool.commonPool())</code>.
+     *
+     * @param values the values to deduplicate
+     * @return the clusters of at least two values, highest score first
+     */
+    public List<Cluster<T>> findDuplicates(Collection<? extends T> values) {
+        return findDuplicates(values, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the groups of values whose names are likely the same.
+     *
+     * @param values the values to deduplicate
+     * @param pool the pool in which to run the work
+     * @return the clusters of at least two values, highest score first
+     */
+    public List<Cluster<T>> findDuplicates(Collection<? extends T> values, ForkJoinPool pool) {
+        List<T> list = new ArrayList<>(values);
+        Name[] names = new Name[list.size()];
+        pool.invoke(new Prepare(list, names, 0, names.length));
+
+        Map<String, List<Integer>> blocksByKey = new HashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            for (String key : names[id].blockingKeys) {
+                blocksByKey.computeIfAbsent(key, k -> new ArrayList<>(2)).add(id);
+            }
+        }
+        List<int[]> blocks = new ArrayList<>();
+        for (List<Integer> block : blocksByKey.values()) {
+            if (block.size() > 1) {
+                blocks.add(block.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        List<Link> links = pool.invoke(new Compare(names, blocks, 0, blocks.size()));
+        return clusters(list, links);
+    }
+
+    /*
+     * Groups linked values, in decreasing order of similarity so that the score of each cluster is its weakest link.
+     */
+    private List<Cluster<T>> clusters(List<T> values, List<Link> links) {
+        links.sort(Comparator.comparingDouble((Link link) -> link.score).reversed());
+        int[] parents = new int[values.size()];
+        double[] scores = new double[values.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (Link link : links) {
+            int one = root(parents, link.one);
+            int other = root(parents, link.other);
+            if (one != other) {
+                parents[Math.max(one, other)] = Math.min(one, other);
+                scores[Math.min(one, other)] = link.score;
+            }
+        }
+        // Only roots of merged groups have a score
+        Map<Integer, List<T>> groups = new HashMap<>();
+        for (int id = 0; id < parents.length; id++) {
+            int root = root(parents, id);
+            if (scores[root] > 0) {
+                groups.computeIfAbsent(root, key -> new ArrayList<>()).add(values.get(id));
+            }
+        }
+        List<Cluster<T>> clusters = new ArrayList<>(groups.size());
+        for (Map.Entry<Integer, List<T>> group : groups.entrySet()) {
+            clusters.add(new Cluster<>(group.getValue(), scores[group.getKey()]));
+        }
+        clusters.sort(Comparator.comparingDouble((Cluster<T> cluster) -> cluster.score).reversed());
+        return clusters;
+    }
+
+    private static int root(int[] parents, int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private static final class Name {
+        private final int[] trigrams;
+        private final String words;
+        private final String[] blockingKeys;
+
+        private Name(String name) {
+            String normalized = StringNormalizer.normalize(name);
+            String[] split = normalized.split("[^a-z0-9]+");
+            List<String> nonEmpty = new ArrayList<>(split.length);
+            for (String word : split) {
+                if (!word.isEmpty()) {
+                    nonEmpty.add(word);
+                }
+            }
+            this.trigrams = TrigramIndex.trigrams(normalized);
+            if (nonEmpty.isEmpty()) {
+                this.words = "";
+                this.blockingKeys = new String[0];
+                return;
+            }
+            String[] sorted = nonEmpty.stream().distinct().sorted().toArray(String[]::new);
+            String[] codes = nonEmpty.stream().map(NameDeduplicator::phoneticCode).sorted().toArray(String[]::new);
+            this.words = String.join(" ", sorted);
+            this.blockingKeys = new String[] { "w:" + this.words,
+                    "p:" + phoneticCode(nonEmpty.get(0)) + " " + phoneticCode(nonEmpty.get(nonEmpty.size() - 1)),
+                    "s:" + String.join(" ", codes) };
+        }
+    }
+
+    private static final class Link {
+        private final int one;
+        private final int other;
+        private final double score;
+
+        private Link(int one, int other, double score) {
+            this.one = one;
+            this.other = other;
+            this.score = score;
+        }
+    }
+
+    private final class Prepare extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> values;
+        private final Name[] names;
+        private final int start;
+        private final int end;
+
+        private Prepare(List<T> values, Name[] names, int start, int end) {
+            this.values = values;
+            this.names = names;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PREPARE_THRESHOLD) {
+                for (int id = start; id < end; id++) {
+                    names[id] = new Name(extractor.apply(values.get(id)));
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Prepare(values, names, start, middle), new Prepare(values, names, middle, end));
+            }
+        }
+    }
+
+    private final class Compare extends RecursiveTask<List<Link>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Name[] names;
+        private final List<int[]> blocks;
+        private final int start;
+        private final int end;
+
+        private Compare(Name[] names, List<int[]> blocks, int start, int end) {
+            this.names = names;
+            this.blocks = blocks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Link> compute() {
+            if (end - start > 1 && comparisons() > COMPARE_THRESHOLD) {
+                int middle = (start + end) >>> 1;
+                Compare first = new Compare(names, blocks, start, middle);
+                first.fork();
+                List<Link> links = new Compare(names, blocks, middle, end).compute();
+                links.addAll(first.join());
+                return links;
+            }
+            List<Link> links = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                compare(blocks.get(i), links);
+            }
+            return links;
+        }
+
+        private long comparisons() {
+            long comparisons = 0;
+            for (int i = start; i < end; i++) {
+                comparisons += (long) blocks.get(i).length * Math.min(blocks.get(i).length, WINDOW);
+            }
+            return comparisons;
+        }
+
+        private void compare(int[] block, List<Link> links) {
+            if (block.length > WINDOW + 1) {
+                Integer[] sorted = Arrays.stream(block).boxed().toArray(Integer[]::new);
+                Arrays.sort(sorted, Comparator.comparing((Integer id) -> names[id].words));
+                block = Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+            }
+            for (int i = 0; i < block.length; i++) {
+                int[] trigrams = names[block[i]].trigrams;
+                for (int j = i + 1; j < block.length && j <= i + WINDOW; j++) {
+                    double score = similarity(trigrams, names[block[j]].trigrams);
+                    if (score >= minScore) {
+                        links.add(new Link(Math.min(block[i], block[j]), Math.max(block[i], block[j]), score));
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Jaccard similarity of two sorted sets of trigrams.
+     */
+    static double similarity(int[] trigrams, int[] others) {
+        if (trigrams.length == 0 && others.length == 0) {
+            return 0;
+        }
+        int shared = 0;
+        for (int i = 0, j = 0; i < trigrams.length && j < others.length;) {
+            if (trigrams[i] == others[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (trigrams[i] < others[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (trigrams.length + others.length - shared);
+    }
+
+    /*
+     * Soundex-style code of a normalized word: its first letter followed by up to three digits for the following groups of
+     * similar consonants. An initial 'h', which is often silent, is skipped.
+     */
+    static String phoneticCode(String word) {
+        int start = word.length() > 1 && word.charAt(0) == 'h' ? 1 : 0;
+        char[] code = new char[4];
+        code[0] = word.charAt(start);
+        int size = 1;
+        char previous = consonantGroup(code[0]);
+        for (int i = start + 1; i < word.length() && size < code.length; i++) {
+            char c = word.charAt(i);
+            char group = consonantGroup(c);
+            if (group != '0' && group != previous) {
+                code[size++] = group;
+            }
+            // Consonants in the same group separated by a vowel count twice, unlike those separated by 'h' or 'w'
+            if (c != 'h' && c != 'w') {
+                previous = group;
+            }
+        }
+        return new String(code, 0, size);
+    }
+
+    private static char consonantGroup(char c) {
+        switch (c) {
+        case 'b':
+        case 'f':
+        case 'p':
+        case 'v':
+            return '1';
+        case 'c':
+        case 'g':
+        case 'j':
+        case 'k':
+        case 'q':
+        case 's':
+        case 'x':
+        case 'z':
+            return '2';
+        case 'd':
+        case 't':
+            return '3';
+        case 'l':
+            return '4';
+        case 'm':
+        case 'n':
+            return '5';
+        case 'r':
+            return '6';
+        default:
+            return '0';
+        }
+    }
+}
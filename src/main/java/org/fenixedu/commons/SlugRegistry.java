@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Assigns unique URL slugs, as returned by {@link StringNormalizer#slugify(String)}, without querying for existing ones.
+ * </p>
+ *
+ * <p>
+ * The first name with a given slug gets the slug itself, the following ones get it suffixed with "-2", "-3" and so on. Slugs
+ * already in use, for instance loaded from the database, are registered with {@link #SlugRegistry(Collection)} or
+ * {@link #reserve(String)}, and are never assigned. All methods can be called concurrently, and concurrent calls never get
+ * the same slug.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * SlugRegistry slugs = new SlugRegistry(existingUnits.stream().map(Unit::getSlug).collect(Collectors.toList()));
+ * newUnits.parallelStream().forEach(unit -&gt; unit.setSlug(slugs.assign(unit.getName())));
+ * </code>
+ * </pre>
+ */
+public final class SlugRegistry {
+
+    private final Set<String> slugs = ConcurrentHashMap.newKeySet();
+
+    /*
+     * For each slug, the highest suffix tried or reserved for it. Suffixed assignment starts after it, as every previous one
+     * is known to be taken.
+     */
+    private final ConcurrentMap<String, AtomicInteger> suffixes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty registry.
+     */
+    public SlugRegistry() {
+    }
+
+    /**
+     * Creates a registry with the given slugs already in use.
+     *
+     * @param existing the slugs in use
+     */
+    public SlugRegistry(Collection<String> existing) {
+        for (String slug : existing) {
+            reserve(slug);
+        }
+    }
+
+    /**
+     * Assigns a unique slug for the given name.
+     *
+     * @param name the name to slugify
+     * @return the slug of the name, suffixed if needed to make it unique
+     * @throws IllegalArgumentException if the name has no slug, for instance if it is made only of punctuation
+     */
+    public String assign(String name) {
+        String slug = StringNormalizer.slugify(name);
+        if (slug.isEmpty()) {
+            throw new IllegalArgumentException("Name has no slug: " + name);
+        }
+        if (slugs.add(slug)) {
+            return slug;
+        }
+        AtomicInteger suffix = suffix(slug);
+        while (true) {
+            String candidate = slug + "-" + suffix.incrementAndGet();
+            if (slugs.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Registers a slug in use, so that it is never assigned.
+     *
+     * @param slug the slug in use
+     * @return true if the slug was not yet registered
+     */
+    public boolean reserve(String slug) {
+        if (!slugs.add(slug)) {
+            return false;
+        }
+        // Assigning after the highest known suffix avoids probing each of the lower ones
+        int dash = slug.lastIndexOf('-');
+        int suffix = dash > 0 ? parseSuffix(slug, dash + 1) : -1;
+        if (suffix > 1) {
+            suffix(slug.substring(0, dash)).accumulateAndGet(suffix, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * @param slug the slug to check
+     * @return true if the slug is assigned or reserved
+     */
+    public boolean contains(String slug) {
+        return slugs.contains(slug);
+    }
+
+    /**
+     * @return the number of assigned and reserved slugs
+     */
+    public int size() {
+        return slugs.size();
+    }
+
+    /**
+     * Returns all assigned and reserved slugs, for instance to persist them or to seed another registry.
+     *
+     * @return a copy of the slugs in use
+     */
+    public Set<String> getSlugs() {
+        return Collections.unmodifiableSet(new HashSet<>(slugs));
+    }
+
+    private AtomicInteger suffix(String slug) {
+        return suffixes.computeIfAbsent(slug, key -> new AtomicInteger(1));
+    }
+
+    /*
+     * The positive number at the given index, or -1 if there is none. Leading zeros are not generated, so they are rejected.
+     */
+    private static int parseSuffix(String slug, int start) {
+        int length = slug.length();
+        if (start == length || length - start > 9 || slug.charAt(start) == '0') {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < length; i++) {
+            char c = slug.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+}
@@ -18,21 +18,103 @@
  */
 package org.fenixedu.commons;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.text.Collator;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.function.Function;
 
+/**
+ * <p>
+ * Normalization of text for comparison, search and URLs.
+ * </p>
+ *
+ * <p>
+ * Besides the {@link String} methods, every normalization can be written to an {@link Appendable}, such as a reused
+ * {@link StringBuilder}, from any {@link CharSequence}, including a {@link CharBuffer} wrapping a <code>char[]</code>. Most
+ * can also be applied from a {@link Reader} to a {@link Writer}. These produce the same text as the {@link String} methods
+ * without creating intermediate strings, except for runs of chars outside Latin-1 and Latin Extended-A and B, which still go
+ * through {@link Normalizer}.
+ * </p>
+ */
 public class StringNormalizer {
-    private static final Pattern NONLATIN = Pattern.compile("[^\\w-]");
-    private static final Pattern WHITESPACE = Pattern.compile("[\\s]");
+    /*
+     * Results of normalizeAndRemoveAccents and normalizePreservingCapitalizedLetters for each char of Latin-1 and Latin
+     * Extended-A and B, computed from the decomposition of the char itself. These chars are all starters, so the
+     * decomposition of a text made only of them is the concatenation of the decompositions of its chars. Entries are ints so
+     * that the markers below never collide with a char of the text.
+     */
+    private static final int TABLE_SIZE = 0x0250;
+    private static final int REMOVED = -1;
+    private static final int NOT_IN_TABLE = -2;
+    private static final int[] WITHOUT_ACCENTS_TABLE = new int[TABLE_SIZE];
+    private static final int[] ASCII_TABLE = new int[TABLE_SIZE];
+
+    /*
+     * ASCII folding used by foldToAscii, which in addition expands ligatures and replaces letters with no decomposition.
+     */
+    private static final String[] FOLDED_TABLE = new String[TABLE_SIZE];
+    private static final char FIRST_LIGATURE = '\uFB00';
+    private static final String[] LIGATURES = { "ff", "fi", "fl", "ffi", "ffl", "st", "st" };
+
+    private static final char FIRST_COMBINING_MARK = '\u0300';
+    private static final char LAST_COMBINING_MARK = '\u036F';
+
+    private static final int MAX_BUFFER_SIZE = 8192;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
+    private static final ThreadLocal<Map<Locale, Collator>> COLLATORS = ThreadLocal.withInitial(HashMap::new);
+
+    static {
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf(c), Form.NFD);
+            String withoutAccents = remove(decomposed, FIRST_COMBINING_MARK, LAST_COMBINING_MARK);
+            String ascii = remove(decomposed, '\u0080', '\uFFFF');
+            WITHOUT_ACCENTS_TABLE[c] = tableEntry(withoutAccents);
+            ASCII_TABLE[c] = tableEntry(ascii);
+            FOLDED_TABLE[c] = ascii;
+        }
+        String[] folded = { "\u00C6", "AE", "\u00D0", "D", "\u00D8", "O", "\u00DE", "TH", "\u00DF", "ss", "\u00E6", "ae",
+                "\u00F0", "d", "\u00F8", "o", "\u00FE", "th", "\u0110", "D", "\u0111", "d", "\u0126", "H", "\u0127", "h",
+                "\u0131", "i", "\u0132", "IJ", "\u0133", "ij", "\u0138", "q", "\u013F", "L", "\u0140", "l", "\u0141", "L",
+                "\u0142", "l", "\u0149", "n", "\u014A", "N", "\u014B", "n", "\u0152", "OE", "\u0153", "oe", "\u0166", "T",
+                "\u0167", "t", "\u017F", "s", "\u0180", "b", "\u0181", "B", "\u0187", "C", "\u0188", "c", "\u0189", "D",
+                "\u018A", "D", "\u0191", "F", "\u0192", "f", "\u0193", "G", "\u0197", "I", "\u0198", "K", "\u0199", "k",
+                "\u019A", "l", "\u019D", "N", "\u019E", "n", "\u01A4", "P", "\u01A5", "p", "\u01AB", "t", "\u01AC", "T",
+                "\u01AD", "t", "\u01AE", "T", "\u01B2", "V", "\u01B3", "Y", "\u01B4", "y", "\u01B5", "Z", "\u01B6", "z",
+                "\u01C4", "DZ", "\u01C5", "Dz", "\u01C6", "dz", "\u01C7", "LJ", "\u01C8", "Lj", "\u01C9", "lj", "\u01CA",
+                "NJ", "\u01CB", "Nj", "\u01CC", "nj", "\u01E4", "G", "\u01E5", "g", "\u01F1", "DZ", "\u01F2", "Dz",
+                "\u01F3", "dz", "\u0221", "d", "\u0224", "Z", "\u0225", "z", "\u0234", "l", "\u0235", "n", "\u0236", "t",
+                "\u0237", "j", "\u023A", "A", "\u023B", "C", "\u023C", "c", "\u023D", "L", "\u023E", "T", "\u023F", "s",
+                "\u0240", "z", "\u0243", "B", "\u0244", "U", "\u0246", "E", "\u0247", "e", "\u0248", "J", "\u0249", "j",
+                "\u024A", "Q", "\u024B", "q", "\u024C", "R", "\u024D", "r", "\u024E", "Y", "\u024F", "y" };
+        for (int i = 0; i < folded.length; i += 2) {
+            FOLDED_TABLE[folded[i].charAt(0)] = folded[i + 1];
+        }
+    }
 
     public static String normalizeAndRemoveAccents(String text) {
-        return Normalizer.normalize(text, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+        if (isAscii(text)) {
+            return text;
+        }
+        return fold(text, Folding.WITHOUT_ACCENTS);
     }
 
     public static String normalizePreservingCapitalizedLetters(String string) {
-        return Normalizer.normalize(string, Form.NFD).replaceAll("[^\\p{ASCII}]", "");
+        if (isAscii(string)) {
+            return string;
+        }
+        return fold(string, Folding.ASCII);
     }
 
     public static String normalize(String string) {
@@ -40,9 +122,587 @@ public class StringNormalizer {
     }
 
     public static String slugify(String name) {
-        String result = normalizePreservingCapitalizedLetters(normalizeAndRemoveAccents(name.trim()));
-        result = WHITESPACE.matcher(result).replaceAll("-");
-        result = NONLATIN.matcher(result).replaceAll("");
-        return result.toLowerCase(Locale.ENGLISH);
+        if (isAscii(name)) {
+            return slugifyAscii(name.trim());
+        }
+        return fold(name.trim(), Folding.SLUG);
+    }
+
+    /**
+     * Same as {@link #normalizePreservingCapitalizedLetters(String)}, but also replaces letters without an accent free
+     * decomposition by their usual ASCII transliteration, and expands ligatures. For example, "Straße" becomes "Strasse" and
+     * "Ærøskøbing" becomes "AEroskobing".
+     *
+     * @param text the text to fold
+     * @return the ASCII folded text
+     */
+    public static String foldToAscii(String text) {
+        if (isAscii(text)) {
+            return text;
+        }
+        return fold(text, Folding.TRANSLITERATED);
+    }
+
+    /**
+     * Returns a key for sorting text in the given locale regardless of accents and case, in the order of the {@link Collator}
+     * of the locale at primary strength applied to {@link #normalizeAndRemoveAccents(String)}. Keys are meant to be computed
+     * once per element and compared with {@link #compareSortKeys(byte[], byte[])}, or any unsigned byte comparison, instead of
+     * normalizing and collating both strings on every comparison.
+     *
+     * @param text the text to sort
+     * @param locale the {@link Locale} whose collation rules apply
+     * @return a new array with the sort key
+     * @see #sort(List, Function, Locale)
+     */
+    public static byte[] sortKey(String text, Locale locale) {
+        return collator(locale).getCollationKey(normalizeAndRemoveAccents(text)).toByteArray();
+    }
+
+    /**
+     * Compares two keys returned by {@link #sortKey(String, Locale)}, as unsigned bytes in lexicographic order.
+     *
+     * @param key the first key
+     * @param other the second key
+     * @return a negative number, zero or a positive number if the first key sorts before, with or after the second
+     */
+    public static int compareSortKeys(byte[] key, byte[] other) {
+        int length = Math.min(key.length, other.length);
+        for (int i = 0; i < length; i++) {
+            if (key[i] != other[i]) {
+                return (key[i] & 0xFF) - (other[i] & 0xFF);
+            }
+        }
+        return key.length - other.length;
+    }
+
+    /**
+     * Sorts the given list by the {@link #sortKey(String, Locale)} of the text extracted from each element. The sort is stable
+     * and computes a single key per element.
+     *
+     * @param list the list to be sorted
+     * @param extractor the function returning the text by which each element is sorted
+     * @param locale the {@link Locale} whose collation rules apply
+     */
+    public static <T> void sort(List<T> list, Function<? super T, String> extractor, Locale locale) {
+        Collator collator = collator(locale);
+        Keyed[] keyed = new Keyed[list.size()];
+        int i = 0;
+        for (T element : list) {
+            keyed[i++] = new Keyed(collator.getCollationKey(normalizeAndRemoveAccents(extractor.apply(element))).toByteArray(),
+                    element);
+        }
+        Arrays.sort(keyed);
+        ListIterator<T> iterator = list.listIterator();
+        for (Keyed element : keyed) {
+            iterator.next();
+            iterator.set(element.<T> element());
+        }
+    }
+
+    private static final class Keyed implements Comparable<Keyed> {
+        private final byte[] key;
+        private final Object element;
+
+        private Keyed(byte[] key, Object element) {
+            this.key = key;
+            this.element = element;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T element() {
+            return (T) element;
+        }
+
+        @Override
+        public int compareTo(Keyed other) {
+            return compareSortKeys(key, other.key);
+        }
+    }
+
+    /*
+     * Collator.getInstance clones a collator on each call, so each thread keeps the ones it used.
+     */
+    private static Collator collator(Locale locale) {
+        return COLLATORS.get().computeIfAbsent(locale, key -> {
+            Collator collator = Collator.getInstance(key);
+            collator.setStrength(Collator.PRIMARY);
+            return collator;
+        });
+    }
+
+    /**
+     * Appends the result of {@link #normalizeAndRemoveAccents(String)} for the given text.
+     *
+     * @param text the text to normalize
+     * @param out where to append the normalized text
+     * @return the given {@link Appendable}
+     * @throws IOException if appending fails
+     */
+    public static <T extends Appendable> T normalizeAndRemoveAccents(CharSequence text, T out) throws IOException {
+        fold(text, 0, text.length(), Folding.WITHOUT_ACCENTS, out);
+        return out;
+    }
+
+    /**
+     * Appends the result of {@link #normalizePreservingCapitalizedLetters(String)} for the given text.
+     *
+     * @param text the text to normalize
+     * @param out where to append the normalized text
+     * @return the given {@link Appendable}
+     * @throws IOException if appending fails
+     */
+    public static <T extends Appendable> T normalizePreservingCapitalizedLetters(CharSequence text, T out) throws IOException {
+        fold(text, 0, text.length(), Folding.ASCII, out);
+        return out;
+    }
+
+    /**
+     * Appends the result of {@link #normalize(String)} for the given text.
+     *
+     * @param text the text to normalize
+     * @param out where to append the normalized text
+     * @return the given {@link Appendable}
+     * @throws IOException if appending fails
+     */
+    public static <T extends Appendable> T normalize(CharSequence text, T out) throws IOException {
+        fold(text, 0, text.length(), Folding.lowerCase(), out);
+        return out;
+    }
+
+    /**
+     * Appends the result of {@link #slugify(String)} for the given name.
+     *
+     * @param name the name to slugify
+     * @param out where to append the slug
+     * @return the given {@link Appendable}
+     * @throws IOException if appending fails
+     */
+    public static <T extends Appendable> T slugify(CharSequence name, T out) throws IOException {
+        slug(name, out);
+        return out;
+    }
+
+    /**
+     * Appends the result of {@link #foldToAscii(String)} for the given text.
+     *
+     * @param text the text to fold
+     * @param out where to append the folded text
+     * @return the given {@link Appendable}
+     * @throws IOException if appending fails
+     */
+    public static <T extends Appendable> T foldToAscii(CharSequence text, T out) throws IOException {
+        fold(text, 0, text.length(), Folding.TRANSLITERATED, out);
+        return out;
+    }
+
+    /**
+     * Same as {@link #normalizeAndRemoveAccents(CharSequence, Appendable)}, for a {@link StringBuilder}.
+     */
+    public static StringBuilder normalizeAndRemoveAccents(CharSequence text, StringBuilder out) {
+        return fold(text, Folding.WITHOUT_ACCENTS, out);
+    }
+
+    /**
+     * Same as {@link #normalizePreservingCapitalizedLetters(CharSequence, Appendable)}, for a {@link StringBuilder}.
+     */
+    public static StringBuilder normalizePreservingCapitalizedLetters(CharSequence text, StringBuilder out) {
+        return fold(text, Folding.ASCII, out);
+    }
+
+    /**
+     * Same as {@link #normalize(CharSequence, Appendable)}, for a {@link StringBuilder}.
+     */
+    public static StringBuilder normalize(CharSequence text, StringBuilder out) {
+        return fold(text, Folding.lowerCase(), out);
+    }
+
+    /**
+     * Same as {@link #slugify(CharSequence, Appendable)}, for a {@link StringBuilder}.
+     */
+    public static StringBuilder slugify(CharSequence name, StringBuilder out) {
+        try {
+            slug(name, out);
+            return out;
+        } catch (IOException e) {
+            // Never thrown by StringBuilder
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #foldToAscii(CharSequence, Appendable)}, for a {@link StringBuilder}.
+     */
+    public static StringBuilder foldToAscii(CharSequence text, StringBuilder out) {
+        return fold(text, Folding.TRANSLITERATED, out);
+    }
+
+    /**
+     * Writes the result of {@link #normalizeAndRemoveAccents(String)} for all the text read, without holding it in memory.
+     *
+     * @param in the text to normalize
+     * @param out where to write the normalized text
+     * @throws IOException if reading or writing fails
+     */
+    public static void normalizeAndRemoveAccents(Reader in, Writer out) throws IOException {
+        fold(in, Folding.WITHOUT_ACCENTS, out);
+    }
+
+    /**
+     * Writes the result of {@link #normalizePreservingCapitalizedLetters(String)} for all the text read, without holding it in
+     * memory.
+     *
+     * @param in the text to normalize
+     * @param out where to write the normalized text
+     * @throws IOException if reading or writing fails
+     */
+    public static void normalizePreservingCapitalizedLetters(Reader in, Writer out) throws IOException {
+        fold(in, Folding.ASCII, out);
+    }
+
+    /**
+     * Writes the result of {@link #normalize(String)} for all the text read, without holding it in memory.
+     *
+     * @param in the text to normalize
+     * @param out where to write the normalized text
+     * @throws IOException if reading or writing fails
+     */
+    public static void normalize(Reader in, Writer out) throws IOException {
+        fold(in, Folding.lowerCase(), out);
+    }
+
+    /**
+     * Writes the result of {@link #foldToAscii(String)} for all the text read, without holding it in memory.
+     *
+     * @param in the text to fold
+     * @param out where to write the folded text
+     * @throws IOException if reading or writing fails
+     */
+    public static void foldToAscii(Reader in, Writer out) throws IOException {
+        fold(in, Folding.TRANSLITERATED, out);
+    }
+
+    /*
+     * Decomposition leaves ASCII text untouched and there are no accents to remove, so such text can skip both.
+     */
+    static boolean isAscii(String text) {
+        int length = text.length();
+        int bits = 0;
+        int i = 0;
+        // Four chars per iteration with a single check per block, instead of a branch per char
+        for (; i + 4 <= length; i += 4) {
+            bits |= text.charAt(i) | text.charAt(i + 1) | text.charAt(i + 2) | text.charAt(i + 3);
+            if ((bits & 0xFF80) != 0) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            bits |= text.charAt(i);
+        }
+        return (bits & 0xFF80) == 0;
+    }
+
+    /*
+     * Same as the general slugify for ASCII text, in a single pass: whitespace becomes '-', anything other than letters, digits,
+     * '_' and '-' is removed, and letters are lower cased.
+     */
+    private static String slugifyAscii(String text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length && isSlugChar(text.charAt(i)) && !isUpperCase(text.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return text;
+        }
+        char[] slug = new char[length];
+        text.getChars(0, i, slug, 0);
+        int size = i;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (isUpperCase(c)) {
+                slug[size++] = (char) (c + ('a' - 'A'));
+            } else if (isSlugChar(c)) {
+                slug[size++] = c;
+            } else if (c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r') {
+                slug[size++] = '-';
+            }
+        }
+        return new String(slug, 0, size);
+    }
+
+    private static boolean isSlugChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_' || isUpperCase(c);
+    }
+
+    private static boolean isUpperCase(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    /*
+     * How each char is folded. Chars below TABLE_SIZE are looked up in a table, or in FOLDED_TABLE if there is none, other
+     * chars are decomposed and those in the removed range dropped. Every resulting ASCII char is then mapped.
+     */
+    private enum Folding {
+        WITHOUT_ACCENTS(WITHOUT_ACCENTS_TABLE, FIRST_COMBINING_MARK, LAST_COMBINING_MARK, asciiMap(false, false, false)),
+
+        ASCII(ASCII_TABLE, '\u0080', '\uFFFF', asciiMap(false, false, false)),
+
+        LOWER_CASE(ASCII_TABLE, '\u0080', '\uFFFF', asciiMap(true, false, false)),
+
+        // Same as String.toLowerCase for ASCII text in Turkish and Azerbaijani, where 'I' is the upper case of dotless 'ı'
+        TURKIC_LOWER_CASE(ASCII_TABLE, '\u0080', '\uFFFF', asciiMap(true, true, false)),
+
+        SLUG(ASCII_TABLE, '\u0080', '\uFFFF', asciiMap(true, false, true)),
+
+        TRANSLITERATED(null, '\u0080', '\uFFFF', asciiMap(false, false, false));
+
+        private final int[] table;
+        private final char removedFrom;
+        private final char removedTo;
+        private final int[] asciiMap;
+
+        private Folding(int[] table, char removedFrom, char removedTo, int[] asciiMap) {
+            this.table = table;
+            this.removedFrom = removedFrom;
+            this.removedTo = removedTo;
+            this.asciiMap = asciiMap;
+        }
+
+        static Folding lowerCase() {
+            String language = Locale.getDefault().getLanguage();
+            return language.equals("tr") || language.equals("az") ? TURKIC_LOWER_CASE : LOWER_CASE;
+        }
+
+        void append(char c, Appendable out) throws IOException {
+            int mapped = c < 0x80 ? asciiMap[c] : c;
+            if (mapped != REMOVED) {
+                out.append((char) mapped);
+            }
+        }
+
+        /*
+         * Folds a non ASCII char below TABLE_SIZE, returning false if it has no table entry.
+         */
+        boolean appendFromTable(char c, Appendable out) throws IOException {
+            if (table == null) {
+                out.append(FOLDED_TABLE[c]);
+                return true;
+            }
+            int folded = table[c];
+            if (folded == NOT_IN_TABLE) {
+                return false;
+            }
+            if (folded != REMOVED) {
+                append((char) folded, out);
+            }
+            return true;
+        }
+
+        /*
+         * Folds a char at or above TABLE_SIZE, resulting from decomposition.
+         */
+        void appendDecomposed(char c, Appendable out) throws IOException {
+            if (table == null && c >= FIRST_LIGATURE && c - FIRST_LIGATURE < LIGATURES.length) {
+                out.append(LIGATURES[c - FIRST_LIGATURE]);
+            } else if (c < removedFrom || c > removedTo) {
+                append(c, out);
+            }
+        }
+
+        /*
+         * Slugs turn whitespace into '-' and drop anything other than letters, digits, '_' and '-'.
+         */
+        private static int[] asciiMap(boolean lowerCase, boolean turkic, boolean slug) {
+            int[] map = new int[0x80];
+            for (char c = 0; c < map.length; c++) {
+                int mapped = c;
+                if (lowerCase && isUpperCase(c)) {
+                    mapped = turkic && c == 'I' ? '\u0131' : c + ('a' - 'A');
+                } else if (slug && !isSlugChar(c)) {
+                    boolean whitespace = c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+                    mapped = whitespace ? '-' : REMOVED;
+                }
+                map[c] = mapped;
+            }
+            return map;
+        }
+    }
+
+    private static String fold(String text, Folding folding) {
+        String result = foldFromTable(text, folding);
+        if (result == null) {
+            result = fold(text, folding, new StringBuilder(text.length())).toString();
+        }
+        return result;
+    }
+
+    /*
+     * Same as fold, in a single pass into a reused buffer, for text whose chars are all in the table of the folding. Returns
+     * null for any other text.
+     */
+    private static String foldFromTable(String text, Folding folding) {
+        int[] table = folding.table;
+        if (table == null) {
+            return null;
+        }
+        int length = text.length();
+        char[] buffer = buffer(length);
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int folded = c < 0x80 ? c : c < TABLE_SIZE ? table[c] : NOT_IN_TABLE;
+            if (folded == NOT_IN_TABLE) {
+                return null;
+            }
+            if (folded >= 0 && folded < 0x80) {
+                folded = folding.asciiMap[folded];
+            }
+            if (folded != REMOVED) {
+                buffer[size++] = (char) folded;
+            }
+        }
+        return new String(buffer, 0, size);
+    }
+
+    /*
+     * A buffer for building results, reused by each thread unless too large to keep around.
+     */
+    private static char[] buffer(int length) {
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[length];
+            if (length <= MAX_BUFFER_SIZE) {
+                BUFFER.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private static void slug(CharSequence name, Appendable out) throws IOException {
+        int start = 0;
+        int end = name.length();
+        // Same as String.trim
+        while (start < end && name.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        fold(name, start, end, Folding.SLUG, out);
+    }
+
+    private static StringBuilder fold(CharSequence text, Folding folding, StringBuilder out) {
+        try {
+            fold(text, 0, text.length(), folding, out);
+        } catch (IOException e) {
+            // Never thrown by StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+
+    /*
+     * Folds the chars between start and end. Chars below TABLE_SIZE are starters, so runs of other chars between them can be
+     * decomposed on their own, with the same result as decomposing the whole text.
+     */
+    private static void fold(CharSequence text, int start, int end, Folding folding, Appendable out) throws IOException {
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                folding.append(c, out);
+                i++;
+            } else if (c < TABLE_SIZE && folding.appendFromTable(c, out)) {
+                i++;
+            } else {
+                int runEnd = i + 1;
+                while (runEnd < end && text.charAt(runEnd) >= TABLE_SIZE) {
+                    runEnd++;
+                }
+                String decomposed = Normalizer.normalize(text.subSequence(i, runEnd), Form.NFD);
+                for (int j = 0; j < decomposed.length(); j++) {
+                    char d = decomposed.charAt(j);
+                    if (d < 0x80) {
+                        folding.append(d, out);
+                    } else if (d >= TABLE_SIZE || !folding.appendFromTable(d, out)) {
+                        folding.appendDecomposed(d, out);
+                    }
+                }
+                i = runEnd;
+            }
+        }
+    }
+
+    /*
+     * Folds the text read in blocks, each one ending before a char that starts a block, so that a char is never split from
+     * the combining marks following it. Only a text of combining marks with no such char keeps growing the buffer.
+     */
+    private static void fold(Reader in, Folding folding, Writer out) throws IOException {
+        char[] buffer = new char[MAX_BUFFER_SIZE];
+        CharSequence text = CharBuffer.wrap(buffer);
+        int size = 0;
+        int read;
+        while ((read = in.read(buffer, size, buffer.length - size)) >= 0) {
+            size += read;
+            int split = size - 1;
+            while (split > 0 && !startsBlock(buffer, split, size)) {
+                split--;
+            }
+            if (split > 0) {
+                fold(text, 0, split, folding, out);
+                System.arraycopy(buffer, split, buffer, 0, size - split);
+                size -= split;
+            } else if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                text = CharBuffer.wrap(buffer);
+            }
+        }
+        fold(text, 0, size, folding, out);
+    }
+
+    /*
+     * Whether decomposing the text before and from the given char separately is the same as decomposing all of it, as it is
+     * neither a combining mark nor in the middle of a surrogate pair, and canonical reordering never moves marks across it.
+     */
+    private static boolean startsBlock(char[] buffer, int index, int size) {
+        char c = buffer[index];
+        if (c < TABLE_SIZE) {
+            return true;
+        }
+        int type;
+        if (Character.isHighSurrogate(c)) {
+            if (index + 1 == size || !Character.isLowSurrogate(buffer[index + 1])) {
+                return false;
+            }
+            type = Character.getType(Character.toCodePoint(c, buffer[index + 1]));
+        } else if (Character.isLowSurrogate(c)) {
+            return false;
+        } else {
+            type = Character.getType(c);
+        }
+        return type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK
+                && type != Character.ENCLOSING_MARK;
+    }
+
+    private static String remove(String text, char from, char to) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < from || c > to) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int tableEntry(String translated) {
+        switch (translated.length()) {
+        case 0:
+            return REMOVED;
+        case 1:
+            return translated.charAt(0);
+        default:
+            return NOT_IN_TABLE;
+        }
     }
 }
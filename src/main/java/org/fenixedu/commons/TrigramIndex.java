@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * In-memory fuzzy search over a large collection of values described by a text, such as the names of people, tolerating typos
+ * and missing accents.
+ * </p>
+ *
+ * <p>
+ * Texts are normalized with {@link StringNormalizer#normalize(String)}, split into alphanumeric words and described by the set
+ * of trigrams of each word padded with two spaces before and one after, so <code>"ana"</code> has <code>"  a"</code>,
+ * <code>" an"</code>, <code>"ana"</code> and <code>"na "</code>. The score of a value for a query is the number of trigrams
+ * they share divided by the number of distinct trigrams in both (their Jaccard similarity), from 0 to 1. Searches return the
+ * values with the best scores, at least {@link #DEFAULT_MIN_SCORE} unless stated otherwise, ties broken by insertion order.
+ * </p>
+ *
+ * <p>
+ * Each possible trigram has an array of the ids of the values containing it, in insertion order, and there are no other
+ * per-value objects, so the index takes about four bytes per trigram of each value. A search scans the arrays of the trigrams
+ * of the query, counting them per value in an array reused by each searching thread, which takes two more bytes per value.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe. Updates are serialized, while searches run concurrently with them without locking, seeing every
+ * value added before they started.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * TrigramIndex&lt;Person&gt; index = new TrigramIndex&lt;&gt;(Person::getName);
+ * index.addAll(people);
+ * List&lt;Person&gt; matches = index.search("joao slva", 10);
+ * </code>
+ * </pre>
+ *
+ * @param <T> the type of the indexed values
+ */
+public final class TrigramIndex<T> {
+
+    /**
+     * The minimum score of the results of {@link #search(String, int)}.
+     */
+    public static final double DEFAULT_MIN_SCORE = 0.3;
+
+    /*
+     * Trigrams are encoded in base 37: 0 is the padding space, 1 to 26 are the letters and 27 to 36 the digits.
+     */
+    private static final int BASE = 37;
+
+    private static final int TRIGRAMS = BASE * BASE * BASE;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final Function<? super T, String> extractor;
+
+    /*
+     * Ids, plus one, of the values with each trigram, in increasing order and followed by zeros. Searches read the size before
+     * anything else and then only ids up to it. Every id up to that size, and every array holding it, was written before the
+     * size was, so searches can run while other ids are being added. Grown arrays are set only once filled.
+     */
+    private final AtomicReferenceArray<int[]> postings;
+
+    private final int[] postingSizes = new int[TRIGRAMS];
+
+    /*
+     * Grown and replaced as a whole, before the size is written.
+     */
+    private volatile Values values = new Values(16);
+
+    private volatile int size = 0;
+
+    /*
+     * Counters of shared trigrams for each value, up to 50653 as that is the number of possible trigrams.
+     */
+    private final ThreadLocal<char[]> counts = ThreadLocal.withInitial(() -> new char[0]);
+
+    /**
+     * Creates an empty index.
+     *
+     * @param extractor the function returning the text to index for each value
+     */
+    public TrigramIndex(Function<? super T, String> extractor) {
+        this.extractor = Objects.requireNonNull(extractor);
+        int[][] postings = new int[TRIGRAMS][];
+        Arrays.fill(postings, NO_IDS);
+        this.postings = new AtomicReferenceArray<>(postings);
+    }
+
+    /**
+     * Creates an index over the given strings, which are also the search results.
+     *
+     * @param strings the strings to index
+     * @return the index
+     */
+    public static TrigramIndex<String> of(Collection<String> strings) {
+        TrigramIndex<String> index = new TrigramIndex<>(Function.identity());
+        index.addAll(strings);
+        return index;
+    }
+
+    /**
+     * Adds the given value to the index.
+     *
+     * @param value the value to add
+     */
+    public synchronized void add(T value) {
+        int id = size;
+        Values values = this.values;
+        if (id == values.values.length) {
+            values = new Values(values, id + (id >> 1));
+            this.values = values;
+        }
+        int[] trigrams = trigrams(extractor.apply(Objects.requireNonNull(value)));
+        for (int trigram : trigrams) {
+            int[] ids = postings.get(trigram);
+            int count = postingSizes[trigram];
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, count + (count >> 1)));
+                ids[count] = id + 1;
+                postings.set(trigram, ids);
+            } else {
+                ids[count] = id + 1;
+            }
+            postingSizes[trigram] = count + 1;
+        }
+        values.values[id] = value;
+        values.trigramCounts[id] = trigrams.length;
+        // Publishes the value to searches
+        size = id + 1;
+    }
+
+    /**
+     * Adds all the given values, as in {@link #add(Object)}.
+     *
+     * @param values the values to add
+     */
+    public synchronized void addAll(Collection<? extends T> values) {
+        for (T value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * Removes the given value from the index, if present. This goes through all the values, so it is meant for occasional
+     * updates, for instance removing and adding back a value whose text changed.
+     *
+     * @param value the value to remove
+     * @return true if the value was present
+     */
+    public synchronized boolean remove(T value) {
+        Object[] values = this.values.values;
+        for (int id = 0; id < size; id++) {
+            if (value.equals(values[id])) {
+                // Its ids are left in place and skipped by searches
+                values[id] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of values added, including removed ones
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Same as <code>search(query, limit, DEFAULT_MIN_SCORE)</code>.
+     *
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @return the values most similar to the query, best first
+     */
+    public List<T> search(String query, int limit) {
+        return search(query, limit, DEFAULT_MIN_SCORE);
+    }
+
+    /**
+     * Searches for the values most similar to the given query.
+     *
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @param minScore the minimum score of the results, greater than 0 and at most 1
+     * @return the values most similar to the query, best first
+     * @throws IllegalArgumentException if the minimum score is out of bounds
+     */
+    public List<T> search(String query, int limit, double minScore) {
+        if (!(minScore > 0 && minScore <= 1)) {
+            throw new IllegalArgumentException("Minimum score must be in ]0, 1]: " + minScore);
+        }
+        int[] trigrams = trigrams(query);
+        if (limit <= 0 || trigrams.length == 0) {
+            return Collections.emptyList();
+        }
+        // The size is read first, so that everything added up to it is visible
+        int size = this.size;
+        Values snapshot = this.values;
+        Object[] values = snapshot.values;
+        int[] trigramCounts = snapshot.trigramCounts;
+
+        // Number of trigrams of the query in each value, scanning each array up to the ids published before this search
+        char[] shared = counts(size);
+        for (int trigram : trigrams) {
+            for (int id : postings.get(trigram)) {
+                if (id == 0 || id > size) {
+                    break;
+                }
+                shared[id - 1]++;
+            }
+        }
+
+        // A value shares at least this many trigrams with the query, or its score is too low
+        int minShared = Math.max(1, (int) Math.ceil(minScore * trigrams.length - 1e-9));
+        // The worst result kept is at the head
+        PriorityQueue<Match> best = new PriorityQueue<>(Math.min(limit, 64) + 1);
+        for (int id = 0; id < size; id++) {
+            int count = shared[id];
+            if (count >= minShared && values[id] != null) {
+                double score = (double) count / (trigrams.length + trigramCounts[id] - count);
+                if (score >= minScore && (best.size() < limit || score > best.peek().score)) {
+                    best.add(new Match(id, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+        Arrays.fill(shared, 0, size, (char) 0);
+
+        List<T> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            results.add(value(values, best.poll().id));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T value(Object[] values, int id) {
+        return (T) values[id];
+    }
+
+    /*
+     * Values by id, null once removed, and their number of distinct trigrams.
+     */
+    private static final class Values {
+        private final Object[] values;
+        private final int[] trigramCounts;
+
+        private Values(int capacity) {
+            this.values = new Object[capacity];
+            this.trigramCounts = new int[capacity];
+        }
+
+        private Values(Values values, int capacity) {
+            this.values = Arrays.copyOf(values.values, capacity);
+            this.trigramCounts = Arrays.copyOf(values.trigramCounts, capacity);
+        }
+    }
+
+    private static final class Match implements Comparable<Match> {
+        private final int id;
+        private final double score;
+
+        private Match(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /*
+         * Worse matches first: lower scores, then later ids.
+         */
+        @Override
+        public int compareTo(Match other) {
+            int result = Double.compare(score, other.score);
+            return result != 0 ? result : Integer.compare(other.id, id);
+        }
+    }
+
+    /*
+     * Zeroed counters for the values of a search, reused by each thread.
+     */
+    private char[] counts(int size) {
+        char[] counts = this.counts.get();
+        if (counts.length < size) {
+            counts = new char[Math.max(size, counts.length + (counts.length >> 1))];
+            this.counts.set(counts);
+        }
+        return counts;
+    }
+
+    /*
+     * The distinct trigrams of the text, sorted.
+     */
+    static int[] trigrams(String text) {
+        String normalized = StringNormalizer.normalize(text);
+        int[] trigrams = new int[normalized.length() * 2 + 2];
+        int count = 0;
+        int trigram = 0;
+        int wordLength = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            int code = i < normalized.length() ? code(normalized.charAt(i)) : 0;
+            if (code != 0) {
+                trigram = (trigram * BASE + code) % TRIGRAMS;
+                trigrams[count++] = trigram;
+                wordLength++;
+            } else if (wordLength > 0) {
+                // Trailing padding, then the next word starts after two spaces
+                trigrams[count++] = trigram * BASE % TRIGRAMS;
+                trigram = 0;
+                wordLength = 0;
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static int code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        } else if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return 0;
+    }
+}
@@ -19,6 +19,13 @@
 package org.fenixedu.commons.i18n;
 
 import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import javax.servlet.http.HttpSession;
 
@@ -27,13 +34,26 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Stores a {@link Locale} in a thread local variable, all locale based functions should access locale from here.
+ *
+ * <p>
+ * Besides setting the locale of the current thread, the locale can be bound only while running a given task, with
+ * {@link #withLocale(Locale, Callable)}. The locale is not inherited by new threads, it is carried over to tasks running in
+ * other threads with the <code>wrap</code> methods. Both restore the previous locale of the running thread afterwards, so
+ * pooled threads never keep the locale of a previous task.
+ * </p>
  */
 public class I18N {
     private static final Logger logger = LoggerFactory.getLogger(I18N.class);
 
     private static final String LOCALE_KEY = I18N.class.getName() + "_LOCAL_KEY";
 
-    private static final InheritableThreadLocal<Locale> locale = new InheritableThreadLocal<>();
+    /*
+     * Not inherited by new threads: pooled threads would keep the locale of whichever thread created them. Tasks running in
+     * other threads get the locale through the wrap methods.
+     */
+    private static final ThreadLocal<Locale> locale = new ThreadLocal<>();
+
+    private static final Executor commonPool = wrap((Executor) ForkJoinPool.commonPool());
 
     /**
      * Gets the {@link Locale} for this thread. The locale returned is the first hit in the following chain:
@@ -73,13 +93,127 @@ public class I18N {
     }
 
     public static void updateFromSession(HttpSession session) {
-        if (session != null && session.getAttribute(LOCALE_KEY) != null) {
-            locale.set((Locale) session.getAttribute(LOCALE_KEY));
-            if (logger.isTraceEnabled()) {
-                logger.trace("Set thread's locale to: {}", locale.get().toString());
-            }
-        } else {
-            locale.set(null);
+        Locale stored = getSessionLocale(session);
+        locale.set(stored);
+        if (stored != null) {
+            logger.trace("Set thread's locale to: {}", stored);
+        }
+    }
+
+    /**
+     * @return the locale set for the given session with {@link #setLocale(HttpSession, Locale)}, or null if none or no session
+     */
+    static Locale getSessionLocale(HttpSession session) {
+        return session == null ? null : (Locale) session.getAttribute(LOCALE_KEY);
+    }
+
+    /**
+     * @return the locale set for the current thread, or null if none
+     */
+    static Locale getThreadLocale() {
+        return locale.get();
+    }
+
+    /**
+     * Runs the given task with the given {@link Locale} bound to the current thread, restoring the previous one afterwards.
+     *
+     * @param locale the locale to bind, or null to use the default locale
+     * @param task the task to run
+     * @return the result of the task
+     * @throws Exception if the task throws it
+     */
+    public static <T> T withLocale(Locale locale, Callable<T> task) throws Exception {
+        Locale previous = I18N.locale.get();
+        I18N.locale.set(locale);
+        try {
+            return task.call();
+        } finally {
+            I18N.locale.set(previous);
+        }
+    }
+
+    /**
+     * Same as {@link #withLocale(Locale, Callable)}, for a task without result.
+     *
+     * @param locale the locale to bind, or null to use the default locale
+     * @param task the task to run
+     */
+    public static void withLocale(Locale locale, Runnable task) {
+        Locale previous = I18N.locale.get();
+        I18N.locale.set(locale);
+        try {
+            task.run();
+        } finally {
+            I18N.locale.set(previous);
         }
     }
+
+    /**
+     * Returns a task that runs the given one with the {@link Locale} of the current thread, wherever it runs.
+     *
+     * @param task the task to wrap
+     * @return the wrapped task
+     */
+    public static Runnable wrap(Runnable task) {
+        Objects.requireNonNull(task);
+        Locale captured = locale.get();
+        return () -> withLocale(captured, task);
+    }
+
+    /**
+     * Returns a task that runs the given one with the {@link Locale} of the current thread, wherever it runs.
+     *
+     * @param task the task to wrap
+     * @return the wrapped task
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Objects.requireNonNull(task);
+        Locale captured = locale.get();
+        return () -> withLocale(captured, task);
+    }
+
+    /**
+     * Returns an {@link Executor} that runs each task with the {@link Locale} of the thread that submitted it. Also meant for
+     * the asynchronous methods of {@link CompletableFuture}, such as
+     * <code>future.thenApplyAsync(function, I18N.wrap(executor))</code>.
+     *
+     * @param executor the executor running the tasks
+     * @return the wrapped executor
+     */
+    public static Executor wrap(Executor executor) {
+        Objects.requireNonNull(executor);
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * Returns an {@link ExecutorService} that runs each task with the {@link Locale} of the thread that submitted it. Shutting it
+     * down shuts down the given one.
+     *
+     * @param executor the executor service running the tasks
+     * @return the wrapped executor service
+     */
+    public static ExecutorService wrap(ExecutorService executor) {
+        return new LocaleExecutorService(Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Same as {@link CompletableFuture#supplyAsync(Supplier)}, running the supplier with the {@link Locale} of the current
+     * thread.
+     *
+     * @param supplier the supplier of the future's value
+     * @return the new future
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, commonPool);
+    }
+
+    /**
+     * Same as {@link CompletableFuture#runAsync(Runnable)}, running the task with the {@link Locale} of the current thread.
+     *
+     * @param task the task to run
+     * @return the new future
+     */
+    public static CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(task, commonPool);
+    }
 }
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>
+ * Chooses which translation of a {@link LocalizedString} is returned by {@link LocalizedString#getContent(Locale)} when there
+ * is none for the requested {@link Locale}. The strategy in use is set with
+ * {@link LocalizedString#setFallbackStrategy(LocaleFallbackStrategy)}.
+ * </p>
+ *
+ * <p>
+ * Strategies must be deterministic: the choice for each requested locale is computed once for each distinct set of available
+ * locales, and kept in a table indexed by the requested locale.
+ * </p>
+ *
+ * <p>
+ * Institutions with their own fallback chains can extend the {@link #DEFAULT} strategy with a {@link Builder}:
+ *
+ * <pre>
+ * <code>
+ * LocalizedString.setFallbackStrategy(LocaleFallbackStrategy.builder()
+ *     .fallback(new Locale("es"), new Locale("pt"), Locale.ENGLISH).build());
+ * </code>
+ * </pre>
+ *
+ * </p>
+ */
+public abstract class LocaleFallbackStrategy {
+
+    /**
+     * The strategy described in {@link LocalizedString#getContent(Locale)}: an exact match, else the closest more generic locale,
+     * else a locale with the same language.
+     */
+    public static final LocaleFallbackStrategy DEFAULT = new LocaleFallbackStrategy() {
+        @Override
+        public Locale select(Locale requested, Set<Locale> available) {
+            LocaleSet locales = LocaleSet.find(available);
+            int index = locales.indexFor(requested);
+            return index >= 0 ? locales.locale(index) : null;
+        }
+
+        @Override
+        int indexFor(LocaleSet locales, Locale requested) {
+            return locales.indexFor(requested);
+        }
+
+        @Override
+        public String toString() {
+            return "LocaleFallbackStrategy.DEFAULT";
+        }
+    };
+
+    /**
+     * Chooses the translation to return for the requested locale. Only called when there is no translation for exactly the
+     * requested locale, which is always preferred.
+     *
+     * @param requested the requested locale
+     * @param available the locales with translations
+     * @return one of the available locales, or null if none is suitable, in which case the translation for the thread's
+     *         {@link Locale} is returned, if any
+     */
+    public abstract Locale select(Locale requested, Set<Locale> available);
+
+    /**
+     * Position of the translation to return, {@link LocaleSet#NO_MATCH} or {@link LocaleSet#NULL_CONTENT}.
+     */
+    int indexFor(LocaleSet locales, Locale requested) {
+        int index = locales.indexOf(requested);
+        if (index < 0) {
+            Locale selected = select(requested, Collections.unmodifiableSet(locales));
+            index = selected == null ? -1 : locales.indexOf(selected);
+        }
+        return index >= 0 ? index : LocaleSet.NO_MATCH;
+    }
+
+    /**
+     * @return a builder of strategies extending {@link #DEFAULT} with explicit fallbacks
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds strategies that try {@link #DEFAULT} first and, when it finds nothing, the declared fallbacks of the requested
+     * locale, each one also with {@link #DEFAULT}. Fallbacks are declared for a locale and apply to all its more specific
+     * variants, so fallbacks declared for <code>es</code> apply to <code>es-AR</code> as well. Fallbacks are transitive: with
+     * <code>es</code> falling back to <code>pt</code> and <code>pt</code> to <code>en</code>, <code>es</code> falls back to
+     * <code>pt</code> and then to <code>en</code>.
+     */
+    public static final class Builder {
+        private final Map<Locale, List<Locale>> fallbacks = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Declares the locales to try, in order, when nothing matches the given one.
+         *
+         * @param locale the locale for which to declare fallbacks
+         * @param fallbacks the locales to try, in order
+         * @return this builder
+         */
+        public Builder fallback(Locale locale, Locale... fallbacks) {
+            Objects.requireNonNull(locale);
+            List<Locale> declared = this.fallbacks.computeIfAbsent(locale, l -> new ArrayList<>());
+            for (Locale fallback : fallbacks) {
+                declared.add(Objects.requireNonNull(fallback));
+            }
+            return this;
+        }
+
+        public LocaleFallbackStrategy build() {
+            Map<Locale, List<Locale>> chains = new HashMap<>();
+            for (Locale locale : fallbacks.keySet()) {
+                Set<Locale> chain = new LinkedHashSet<>();
+                expand(locale, chain);
+                chain.remove(locale);
+                chains.put(locale, new ArrayList<>(chain));
+            }
+            return new ChainedStrategy(chains);
+        }
+
+        private void expand(Locale locale, Set<Locale> chain) {
+            for (Locale fallback : fallbacks.getOrDefault(locale, Collections.emptyList())) {
+                if (chain.add(fallback)) {
+                    expand(fallback, chain);
+                }
+            }
+        }
+    }
+
+    private static final class ChainedStrategy extends LocaleFallbackStrategy {
+        private final Map<Locale, List<Locale>> chains;
+
+        private ChainedStrategy(Map<Locale, List<Locale>> chains) {
+            this.chains = chains;
+        }
+
+        @Override
+        public Locale select(Locale requested, Set<Locale> available) {
+            LocaleSet locales = LocaleSet.find(available);
+            int index = indexFor(locales, requested);
+            return index >= 0 ? locales.locale(index) : null;
+        }
+
+        @Override
+        int indexFor(LocaleSet locales, Locale requested) {
+            int index = locales.indexFor(requested);
+            if (index != LocaleSet.NO_MATCH) {
+                return index;
+            }
+            for (Locale locale = requested; locale != null; locale = LocaleSet.generifyLocale(locale)) {
+                for (Locale fallback : chains.getOrDefault(locale, Collections.emptyList())) {
+                    index = locales.indexFor(fallback);
+                    if (index >= 0) {
+                        return index;
+                    }
+                }
+            }
+            return LocaleSet.NO_MATCH;
+        }
+
+        @Override
+        public String toString() {
+            return "LocaleFallbackStrategy" + chains;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide registry assigning a small, stable, integer id to every {@link Locale} used by a {@link LocalizedString}.
+ * Ids are handed out sequentially and never reused, so they can index plain arrays.
+ */
+final class LocaleRegistry {
+
+    /**
+     * Upper bound for ids handed out to locales that are only being looked up, and not stored. Prevents arbitrary requested
+     * locales from growing the registry forever.
+     */
+    static final int MAX_LOOKUP_ID = 1024;
+
+    private static final ConcurrentMap<Locale, Integer> ids = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Locale> tags = new ConcurrentHashMap<>();
+
+    private static volatile Locale[] locales = new Locale[0];
+
+    private LocaleRegistry() {
+    }
+
+    /**
+     * Returns the id of the given locale, registering it if necessary.
+     */
+    static int register(Locale locale) {
+        Integer id = ids.get(locale);
+        return id != null ? id : add(locale);
+    }
+
+    /**
+     * Returns the id of the given locale, registering it only if the registry is still small. Returns -1 otherwise.
+     */
+    static int lookup(Locale locale) {
+        Integer id = ids.get(locale);
+        if (id != null) {
+            return id;
+        }
+        return locales.length < MAX_LOOKUP_ID ? add(locale) : -1;
+    }
+
+    /**
+     * Returns the id of the given locale, or -1 if it was never registered.
+     */
+    static int find(Locale locale) {
+        Integer id = ids.get(locale);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Parses a language tag in the same, strict, way as {@link Locale.Builder#setLanguageTag(String)}, caching the result.
+     *
+     * @throws java.util.IllformedLocaleException if the tag is not well-formed
+     */
+    static Locale forLanguageTag(String tag) {
+        Locale locale = tags.get(tag);
+        if (locale == null) {
+            locale = new Locale.Builder().setLanguageTag(tag).build();
+            if (tags.size() < MAX_LOOKUP_ID) {
+                tags.put(tag, locale);
+            }
+        }
+        return locale;
+    }
+
+    static Locale locale(int id) {
+        return locales[id];
+    }
+
+    static int size() {
+        return locales.length;
+    }
+
+    private static synchronized int add(Locale locale) {
+        Integer id = ids.get(locale);
+        if (id == null) {
+            Locale[] current = locales;
+            Locale[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = locale;
+            locales = updated;
+            id = current.length;
+            ids.put(locale, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IllformedLocaleException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Locale.LanguageRange;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import com.google.common.base.Strings;
+
+/**
+ * <p>
+ * Servlet {@link Filter} that sets the {@link I18N} locale while processing each request, restoring the previous one afterwards.
+ * The locale is the first hit in the following chain:
+ * <ul>
+ * <li>The locale set for the session with {@link I18N#setLocale(javax.servlet.http.HttpSession, Locale)}</li>
+ * <li>The supported locale best matching the request's <code>Accept-Language</code> header</li>
+ * <li>The default locale</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * A language range of the header matches a supported locale with the same tag, or truncated as in
+ * {@link Locale#lookup(List, Collection)}, or else the first supported locale with the same language. Ranges are tried in
+ * order of preference. Each distinct header value is negotiated only once, up to <code>cacheSize</code> distinct values.
+ * </p>
+ *
+ * <p>
+ * Configured with the following init parameters:
+ * <ul>
+ * <li><code>supportedLocales</code>: comma separated language tags, required</li>
+ * <li><code>defaultLocale</code>: language tag, defaults to the first supported locale</li>
+ * <li><code>cacheSize</code>: maximum number of cached header values, defaults to 256</li>
+ * </ul>
+ * </p>
+ */
+public class LocaleResolutionFilter implements Filter {
+
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private List<Locale> supportedLocales;
+
+    private Locale defaultLocale;
+
+    private int cacheSize;
+
+    private final ConcurrentMap<String, Locale> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a filter to be configured through its init parameters.
+     */
+    public LocaleResolutionFilter() {
+    }
+
+    /**
+     * Creates a filter with the given configuration, ignoring init parameters.
+     *
+     * @param supportedLocales the supported locales, in order of preference
+     * @param defaultLocale the locale to use when none is acceptable, or null for the first supported locale
+     * @param cacheSize the maximum number of cached header values
+     */
+    public LocaleResolutionFilter(Collection<Locale> supportedLocales, Locale defaultLocale, int cacheSize) {
+        configure(new ArrayList<>(supportedLocales), defaultLocale, cacheSize);
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        if (supportedLocales != null) {
+            return;
+        }
+        String supported = config.getInitParameter("supportedLocales");
+        if (Strings.isNullOrEmpty(supported)) {
+            throw new ServletException("LocaleResolutionFilter requires the supportedLocales init parameter");
+        }
+        try {
+            List<Locale> locales = new ArrayList<>();
+            for (String tag : supported.split(",")) {
+                if (!tag.trim().isEmpty()) {
+                    locales.add(LocaleRegistry.forLanguageTag(tag.trim()));
+                }
+            }
+            String defaultTag = config.getInitParameter("defaultLocale");
+            String size = config.getInitParameter("cacheSize");
+            configure(locales, Strings.isNullOrEmpty(defaultTag) ? null : LocaleRegistry.forLanguageTag(defaultTag.trim()),
+                    Strings.isNullOrEmpty(size) ? DEFAULT_CACHE_SIZE : Integer.parseInt(size.trim()));
+        } catch (IllformedLocaleException | IllegalArgumentException e) {
+            throw new ServletException("Invalid LocaleResolutionFilter configuration", e);
+        }
+    }
+
+    private void configure(List<Locale> supportedLocales, Locale defaultLocale, int cacheSize) {
+        if (supportedLocales.isEmpty()) {
+            throw new IllegalArgumentException("No supported locales");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+        }
+        this.supportedLocales = Collections.unmodifiableList(supportedLocales);
+        this.defaultLocale = defaultLocale == null ? supportedLocales.get(0) : defaultLocale;
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+            ServletException {
+        Locale previous = I18N.getThreadLocale();
+        I18N.setLocale(resolve(request));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            I18N.setLocale(previous);
+        }
+    }
+
+    /**
+     * @return the locale for the given request
+     */
+    protected Locale resolve(ServletRequest request) {
+        if (request instanceof HttpServletRequest) {
+            HttpServletRequest http = (HttpServletRequest) request;
+            Locale stored = I18N.getSessionLocale(http.getSession(false));
+            return stored != null ? stored : resolve(http.getHeader("Accept-Language"));
+        }
+        return defaultLocale;
+    }
+
+    /**
+     * @return the supported locale best matching the given <code>Accept-Language</code> header value
+     */
+    Locale resolve(String acceptLanguage) {
+        if (Strings.isNullOrEmpty(acceptLanguage)) {
+            return defaultLocale;
+        }
+        Locale locale = cache.get(acceptLanguage);
+        if (locale == null) {
+            locale = negotiate(acceptLanguage);
+            // Past the limit, further values are negotiated every time, so arbitrary headers cannot grow the cache
+            if (cache.size() < cacheSize) {
+                cache.putIfAbsent(acceptLanguage, locale);
+            }
+        }
+        return locale;
+    }
+
+    private Locale negotiate(String acceptLanguage) {
+        List<LanguageRange> ranges;
+        try {
+            ranges = LanguageRange.parse(acceptLanguage);
+        } catch (IllegalArgumentException e) {
+            return defaultLocale;
+        }
+        for (LanguageRange range : ranges) {
+            if (range.getWeight() == 0) {
+                continue;
+            }
+            if (range.getRange().equals("*")) {
+                return defaultLocale;
+            }
+            Locale locale = Locale.lookup(Collections.singletonList(range), supportedLocales);
+            if (locale != null) {
+                return locale;
+            }
+            String language = range.getRange().split("-", 2)[0];
+            for (Locale supported : supportedLocales) {
+                if (supported.getLanguage().equals(language)) {
+                    return supported;
+                }
+            }
+        }
+        return defaultLocale;
+    }
+
+    @Override
+    public void destroy() {
+        cache.clear();
+    }
+}
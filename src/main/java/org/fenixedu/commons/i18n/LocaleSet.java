@@ -0,0 +1,339 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Strings;
+
+/**
+ * Immutable set of locales, as ids of the {@link LocaleRegistry} sorted in ascending order. Instances are canonical: every
+ * {@link LocalizedString} with translations for the same locales shares the same {@link LocaleSet}, and keeps only an array of
+ * values parallel to it.
+ */
+final class LocaleSet extends AbstractSet<Locale> {
+
+    /**
+     * Returned by {@link #indexFor(Locale)} when no translation is compatible with the requested locale.
+     */
+    static final int NO_MATCH = -1;
+
+    /**
+     * Returned by {@link #indexFor(Locale)} when the fallback strategy settles on no content at all.
+     */
+    static final int NULL_CONTENT = -2;
+
+    private static final int RESOLVED_OFFSET = 1 - NULL_CONTENT;
+
+    private static final ConcurrentMap<Key, LocaleSet> canonical = new ConcurrentHashMap<>();
+
+    static final LocaleSet EMPTY = of(new int[0]);
+
+    private final int[] ids;
+
+    private final Locale[] locales;
+
+    private final String[] tags;
+
+    /*
+     * Whether this set is not canonical and may have locales that are not registered, with an id of -1.
+     */
+    private final boolean temporary;
+
+    /*
+     * Memoized results of the fallback strategy in use, null until first needed.
+     */
+    private volatile Table table;
+
+    private LocaleSet(int[] ids) {
+        this.ids = ids;
+        this.locales = new Locale[ids.length];
+        this.tags = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            locales[i] = LocaleRegistry.locale(ids[i]);
+            tags[i] = locales[i].toLanguageTag();
+        }
+        this.temporary = false;
+    }
+
+    private LocaleSet(int[] ids, Locale[] locales) {
+        this.ids = ids;
+        this.locales = locales;
+        this.tags = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            tags[i] = locales[i].toLanguageTag();
+        }
+        this.temporary = true;
+    }
+
+    /**
+     * Returns the canonical set for the given registry ids, which must be sorted in ascending order and not be modified
+     * afterwards.
+     */
+    static LocaleSet of(int[] ids) {
+        Key key = new Key(ids);
+        LocaleSet set = canonical.get(key);
+        if (set == null) {
+            LocaleSet created = new LocaleSet(ids);
+            set = canonical.putIfAbsent(key, created);
+            if (set == null) {
+                set = created;
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Returns a set with the given locales, without registering them or creating a canonical set, so that arbitrary sets can
+     * be resolved without growing either. This is the canonical set if it already exists, else a temporary one, with the
+     * registered locales first, as in a canonical set, and then the others in iteration order.
+     */
+    static LocaleSet find(Set<Locale> locales) {
+        if (locales instanceof LocaleSet) {
+            return (LocaleSet) locales;
+        }
+        int[] ids = new int[locales.size()];
+        Locale[] unregistered = new Locale[ids.length];
+        int registered = 0;
+        int others = 0;
+        for (Locale locale : locales) {
+            int id = LocaleRegistry.find(locale);
+            if (id >= 0) {
+                ids[registered++] = id;
+            } else {
+                unregistered[others++] = locale;
+            }
+        }
+        Arrays.sort(ids, 0, registered);
+        if (others == 0) {
+            LocaleSet set = canonical.get(new Key(ids));
+            if (set != null) {
+                return set;
+            }
+        }
+        Locale[] all = new Locale[ids.length];
+        for (int i = 0; i < registered; i++) {
+            all[i] = LocaleRegistry.locale(ids[i]);
+        }
+        for (int i = 0; i < others; i++) {
+            ids[registered + i] = -1;
+            all[registered + i] = unregistered[i];
+        }
+        return new LocaleSet(ids, all);
+    }
+
+    /**
+     * Position of the locale with the given registry id, or -1 if not present.
+     */
+    int indexOf(int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Position of the given locale, or -1 if not present.
+     */
+    int indexOf(Locale locale) {
+        int id = LocaleRegistry.find(locale);
+        if (id >= 0) {
+            return indexOf(id);
+        }
+        if (temporary) {
+            for (int i = 0; i < locales.length; i++) {
+                if (ids[i] < 0 && locales[i].equals(locale)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    int id(int index) {
+        return ids[index];
+    }
+
+    Locale locale(int index) {
+        return locales[index];
+    }
+
+    /**
+     * Language tag of the locale in the given position, as returned by {@link Locale#toLanguageTag()}.
+     */
+    String tag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * Position of the translation chosen by the {@link LocaleFallbackStrategy} in use for the requested locale, computed only
+     * once for each requested locale.
+     *
+     * @return the position, {@link #NO_MATCH} or {@link #NULL_CONTENT}
+     */
+    int resolve(Locale locale) {
+        LocaleFallbackStrategy strategy = LocalizedString.fallbackStrategy;
+        int id = LocaleRegistry.lookup(locale);
+        if (id < 0) {
+            return strategy.indexFor(this, locale);
+        }
+        Table table = this.table;
+        if (table == null || table.strategy != strategy) {
+            table = new Table(strategy, new int[LocaleRegistry.size()]);
+            this.table = table;
+        }
+        int[] cache = table.resolved;
+        if (id < cache.length && cache[id] != 0) {
+            return cache[id] - RESOLVED_OFFSET;
+        }
+        int index = strategy.indexFor(this, locale);
+        if (id >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(id + 1, LocaleRegistry.size()));
+            this.table = new Table(strategy, cache);
+        }
+        cache[id] = index + RESOLVED_OFFSET;
+        return index;
+    }
+
+    /**
+     * Position of the translation that best approximates the requested locale, without considering the thread's locale. See
+     * {@link LocalizedString#getContent(Locale)} for the strategy.
+     *
+     * @return the position, {@link #NO_MATCH} or {@link #NULL_CONTENT}
+     */
+    int indexFor(Locale locale) {
+        int index = indexOf(locale);
+        if (index >= 0) {
+            return index;
+        }
+        // Best effort strategy inspired on ResourceBundle behaviour
+        Locale generic = generifyLocale(locale);
+        while (generic != null) {
+            index = indexOf(generic);
+            if (index >= 0) {
+                return index;
+            }
+            generic = generifyLocale(generic);
+        }
+        Set<Locale> sameLanguage = new HashSet<>();
+        for (Locale candidate : locales) {
+            if (candidate.getLanguage().equals(locale.getLanguage())) {
+                sameLanguage.add(candidate);
+            }
+        }
+        if (!sameLanguage.isEmpty()) {
+            if (sameLanguage.size() == 1) {
+                return indexOf(sameLanguage.iterator().next());
+            }
+            for (Locale candidate : sameLanguage) {
+                if (candidate.getCountry().equals(locale.getCountry())) {
+                    // The requested locale itself is the only same country candidate, and it is known to be absent
+                    return NULL_CONTENT;
+                }
+            }
+            LocalizedString.logger.debug("Retrieving a content with ambiguous locale fallback strategy");
+            return indexOf(sameLanguage.iterator().next());
+        }
+        return NO_MATCH;
+    }
+
+    static Locale generifyLocale(Locale locale) {
+        if (Strings.isNullOrEmpty(locale.getVariant())) {
+            if (Strings.isNullOrEmpty(locale.getCountry())) {
+                return null;
+            }
+            return new Locale(locale.getLanguage());
+        }
+        return new Locale(locale.getLanguage(), locale.getCountry());
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Locale && indexOf((Locale) o) >= 0;
+    }
+
+    @Override
+    public Iterator<Locale> iterator() {
+        return new Iterator<Locale>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < locales.length;
+            }
+
+            @Override
+            public Locale next() {
+                if (next >= locales.length) {
+                    throw new NoSuchElementException();
+                }
+                return locales[next++];
+            }
+        };
+    }
+
+    /**
+     * Results of a strategy, indexed by the registry id of the requested locale. Entries are stored shifted by RESOLVED_OFFSET
+     * so that zero means not yet resolved. Races only cause a result to be computed more than once.
+     */
+    private static final class Table {
+        private final LocaleFallbackStrategy strategy;
+        private final int[] resolved;
+
+        private Table(LocaleFallbackStrategy strategy, int[] resolved) {
+            this.strategy = strategy;
+            this.resolved = resolved;
+        }
+    }
+
+    private static final class Key {
+        private final int[] ids;
+        private final int hash;
+
+        private Key(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(ids, ((Key) obj).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -18,27 +18,43 @@
  */
 package org.fenixedu.commons.i18n;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.text.CollationKey;
 import java.text.Collator;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * <p>
@@ -77,75 +93,15 @@ public final class LocalizedString implements Serializable, Comparable<Localized
 
     protected static final Logger logger = LoggerFactory.getLogger(LocalizedString.class);
 
+    static volatile LocaleFallbackStrategy fallbackStrategy = LocaleFallbackStrategy.DEFAULT;
+
     protected static final class InternalMap extends HashMap<Locale, String> {
         private static final long serialVersionUID = -2722162618911116061L;
 
-        public String getContent(Locale locale) {
-            if (containsKey(locale)) {
-                return get(locale);
-            }
-            // Best effort strategy inspired on ResourceBundle behaviour
-            Locale generic = generifyLocale(locale);
-            while (generic != null) {
-                if (containsKey(generic)) {
-                    return get(generic);
-                }
-                generic = generifyLocale(generic);
-            }
-            Set<Locale> sameLanguage = new HashSet<>();
-            for (Locale candidate : keySet()) {
-                if (candidate.getLanguage().equals(locale.getLanguage())) {
-                    sameLanguage.add(candidate);
-                }
-            }
-            if (!sameLanguage.isEmpty()) {
-                if (sameLanguage.size() == 1) {
-                    return get(sameLanguage.iterator().next());
-                }
-                Set<Locale> sameCountry = new HashSet<>();
-                for (Locale candidate : sameLanguage) {
-                    if (candidate.getCountry().equals(locale.getCountry())) {
-                        sameCountry.add(locale);
-                    }
-                }
-                if (!sameCountry.isEmpty()) {
-                    if (sameCountry.size() == 1) {
-                        return get(sameCountry.iterator().next());
-                    }
-                    logger.debug("Retrieving a content with ambiguous locale fallback strategy");
-                    return get(sameLanguage.iterator().next());
-                }
-                logger.debug("Retrieving a content with ambiguous locale fallback strategy");
-                return get(sameLanguage.iterator().next());
-            }
-            if (!locale.equals(I18N.getLocale())) {
-                return getContent(I18N.getLocale());
-            }
-            return null;
-        }
-
-        private Locale generifyLocale(Locale locale) {
-            if (Strings.isNullOrEmpty(locale.getVariant())) {
-                if (Strings.isNullOrEmpty(locale.getCountry())) {
-                    return null;
-                }
-                return new Locale(locale.getLanguage());
-            }
-            return new Locale(locale.getLanguage(), locale.getCountry());
-        }
-
-        public JsonElement json() {
-            JsonObject json = new JsonObject();
-            for (Locale locale : keySet()) {
-                json.addProperty(locale.toLanguageTag(), get(locale));
-            }
-            return json;
-        }
-
         public static LocalizedString fromJson(JsonElement json) {
             Builder builder = new Builder();
             for (Entry<String, JsonElement> entry : json.getAsJsonObject().entrySet()) {
-                Locale locale = new Locale.Builder().setLanguageTag(entry.getKey()).build();
+                Locale locale = LocaleRegistry.forLanguageTag(entry.getKey());
                 builder = builder.with(locale, entry.getValue().getAsString());
             }
             return builder.build();
@@ -175,17 +131,25 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * </p>
      */
     public static final class Builder {
-        protected InternalMap map;
+        /*
+         * Translations are kept as given until something is appended to them, and accumulated in a StringBuilder from then on,
+         * so that repeated appends are not quadratic.
+         */
+        protected Map<Locale, CharSequence> map;
 
         /**
          * Create an empty builder.
          */
         public Builder() {
-            this.map = new InternalMap();
+            this.map = new HashMap<>();
         }
 
-        protected Builder(InternalMap map) {
-            this.map = map;
+        protected Builder(LocalizedString string) {
+            String[] values = string.values();
+            this.map = new HashMap<>(Math.max(2 * values.length, 4));
+            for (int i = 0; i < values.length; i++) {
+                map.put(string.locales.locale(i), values[i]);
+            }
         }
 
         /**
@@ -244,9 +208,21 @@ public final class LocalizedString implements Serializable, Comparable<Localized
          * @return The builder instance with the content changed.
          */
         public Builder append(LocalizedString string, String separator) {
-            Stream.concat(map.keySet().stream(), string.map.keySet().stream()).distinct().forEach(locale -> {
-                map.put(locale, Joiner.on(separator).skipNulls().join(map.get(locale), string.map.get(locale)));
-            });
+            Objects.requireNonNull(separator);
+            String[] values = string.values();
+            for (int i = 0; i < values.length; i++) {
+                Locale locale = string.locales.locale(i);
+                CharSequence current = map.get(locale);
+                if (current == null) {
+                    map.put(locale, values[i]);
+                } else {
+                    StringBuilder accumulated = accumulator(current);
+                    accumulated.append(separator).append(values[i]);
+                    if (accumulated != current) {
+                        map.put(locale, accumulated);
+                    }
+                }
+            }
             return this;
         }
 
@@ -268,29 +244,62 @@ public final class LocalizedString implements Serializable, Comparable<Localized
          * @return The builder instance with the content changed.
          */
         public Builder append(String string, String separator) {
-            for (Locale locale : map.keySet()) {
-                map.put(locale, Joiner.on(separator).skipNulls().join(map.get(locale), string));
+            Objects.requireNonNull(separator);
+            if (string == null) {
+                return this;
+            }
+            for (Entry<Locale, CharSequence> entry : map.entrySet()) {
+                StringBuilder accumulated = accumulator(entry.getValue());
+                accumulated.append(separator).append(string);
+                entry.setValue(accumulated);
             }
             return this;
         }
 
+        private static StringBuilder accumulator(CharSequence content) {
+            return content instanceof StringBuilder ? (StringBuilder) content : new StringBuilder(content);
+        }
+
         /**
          * Builds an {@link LocalizedString} from the builder state.
          * 
          * @return the corresponding {@link LocalizedString}.
          */
         public LocalizedString build() {
-            return new LocalizedString(map);
+            return LocalizedStringPool.intern(LocalizedString.of(map));
         }
     }
 
-    protected final InternalMap map;
+    private static final String[] NO_VALUES = new String[0];
+
+    /**
+     * Serialized form of previous versions, in which the translations were stored in an {@link InternalMap}. Still needed to read
+     * old streams, current versions are written as {@link LocalizedStringSer}.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("map", InternalMap.class) };
+
+    /*
+     * Translations are kept in an array parallel to a shared, canonical, set of locales. Not final only to allow
+     * deserialization and lazy decoding, never changed afterwards.
+     */
+    private transient LocaleSet locales;
+
+    /*
+     * Either the String[] of translations or, for lazily decoded instances, the LazyJson they come from. Always read through
+     * values(): as the field is volatile, reading the translations guarantees that the locales are visible as well.
+     */
+    private transient volatile Object content;
+
+    /*
+     * Cached hash code, zero if not yet computed.
+     */
+    private transient int hash;
 
     /**
      * Creates an empty {@link LocalizedString}.
      */
     public LocalizedString() {
-        this.map = new InternalMap();
+        this(LocaleSet.EMPTY, NO_VALUES);
     }
 
     /**
@@ -300,11 +309,93 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @param content translated text.
      */
     public LocalizedString(Locale locale, final String content) {
-        this.map = new Builder().with(locale, content).map;
+        LocalizedString string = new Builder().with(locale, content).build();
+        this.locales = string.locales;
+        this.content = string.content;
+    }
+
+    private LocalizedString(LocaleSet locales, String[] values) {
+        this.locales = locales;
+        this.content = values;
+    }
+
+    private LocalizedString(LazyJson raw) {
+        this.content = raw;
+    }
+
+    static LocalizedString of(Map<Locale, ? extends CharSequence> map) {
+        Locale[] locales = new Locale[map.size()];
+        String[] values = new String[locales.length];
+        int size = 0;
+        for (Entry<Locale, ? extends CharSequence> entry : map.entrySet()) {
+            locales[size] = entry.getKey();
+            values[size++] = entry.getValue().toString();
+        }
+        return of(locales, values, size);
+    }
+
+    /**
+     * Creates an instance with the first <code>size</code> translations of the given arrays, which are reused. Translations must
+     * not be empty.
+     * 
+     * @throws IllegalArgumentException if a locale is repeated
+     */
+    static LocalizedString of(Locale[] locales, String[] values, int size) {
+        if (size == 0) {
+            return new LocalizedString();
+        }
+        int[] ids = new int[size];
+        for (int n = 0; n < size; n++) {
+            // Insertion sort by locale id, sets are very small
+            int id = LocaleRegistry.register(locales[n]);
+            String value = LocalizedStringPool.intern(values[n]);
+            int i = n;
+            while (i > 0 && ids[i - 1] >= id) {
+                if (ids[i - 1] == id) {
+                    throw new IllegalArgumentException("Repeated locale in LocalizedString: " + locales[n]);
+                }
+                ids[i] = ids[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            ids[i] = id;
+            values[i] = value;
+        }
+        return new LocalizedString(LocaleSet.of(ids), values.length == size ? values : Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Translations of this string, in the same order as {@link #getLocales()}. Must not be modified.
+     */
+    String[] values() {
+        Object content = this.content;
+        return content instanceof String[] ? (String[]) content : decode((LazyJson) content);
     }
 
-    protected LocalizedString(InternalMap map) {
-        this.map = map;
+    /**
+     * Canonical set of the locales of this string, parallel to {@link #values()}.
+     */
+    LocaleSet locales() {
+        values();
+        return locales;
+    }
+
+    /**
+     * Creates a pooled instance from translations that were computed by this class, parallel to the given locales.
+     */
+    private static LocalizedString of(LocaleSet locales, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = LocalizedStringPool.intern(values[i]);
+        }
+        return LocalizedStringPool.intern(new LocalizedString(locales, values));
+    }
+
+    /**
+     * Creates a string with the given translations, parallel to the given locales, which must not be modified afterwards.
+     * Neither the translations nor the string are interned.
+     */
+    static LocalizedString wrap(LocaleSet locales, String[] values) {
+        return new LocalizedString(locales, values);
     }
 
     /**
@@ -313,7 +404,7 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @return the {@link Builder} instance.
      */
     public Builder builder() {
-        return new Builder((InternalMap) map.clone());
+        return new Builder(this);
     }
 
     /**
@@ -325,7 +416,32 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link Builder#with(Locale, String)}
      */
     public LocalizedString with(Locale locale, final String content) {
-        return builder().with(locale, content).build();
+        if (locale == null || Strings.isNullOrEmpty(content)) {
+            return builder().with(locale, content).build();
+        }
+        String[] values = values();
+        int index = locales.indexOf(locale);
+        if (index >= 0) {
+            String[] changed = values.clone();
+            changed[index] = content;
+            return of(locales, changed);
+        }
+        int id = LocaleRegistry.register(locale);
+        int[] ids = new int[values.length + 1];
+        String[] changed = new String[values.length + 1];
+        int position = 0;
+        while (position < values.length && locales.id(position) < id) {
+            ids[position] = locales.id(position);
+            changed[position] = values[position];
+            position++;
+        }
+        ids[position] = id;
+        changed[position] = content;
+        for (int i = position; i < values.length; i++) {
+            ids[i + 1] = locales.id(i);
+            changed[i + 1] = values[i];
+        }
+        return of(LocaleSet.of(ids), changed);
     }
 
     /**
@@ -336,7 +452,20 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link Builder#without(Locale)}
      */
     public LocalizedString without(Locale locale) {
-        return builder().without(locale).build();
+        String[] values = values();
+        int index = locales.indexOf(locale);
+        if (index < 0) {
+            return this;
+        }
+        int[] ids = new int[values.length - 1];
+        String[] changed = new String[values.length - 1];
+        for (int i = 0, j = 0; i < values.length; i++) {
+            if (i != index) {
+                ids[j] = locales.id(i);
+                changed[j++] = values[i];
+            }
+        }
+        return of(LocaleSet.of(ids), changed);
     }
 
     /**
@@ -359,7 +488,17 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link Builder#append(LocalizedString, String)}
      */
     public LocalizedString append(LocalizedString string, String separator) {
-        return builder().append(string, separator).build();
+        String[] values = values();
+        String[] others = string.values();
+        if (string.locales != locales) {
+            return builder().append(string, separator).build();
+        }
+        Objects.requireNonNull(separator);
+        String[] appended = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            appended[i] = values[i] + separator + others[i];
+        }
+        return of(locales, appended);
     }
 
     /**
@@ -382,7 +521,16 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link Builder#append(String, String)}
      */
     public LocalizedString append(String string, String separator) {
-        return builder().append(string, separator).build();
+        Objects.requireNonNull(separator);
+        if (string == null) {
+            return this;
+        }
+        String[] values = values();
+        String[] appended = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            appended[i] = values[i] + separator + string;
+        }
+        return of(locales, appended);
     }
 
     /**
@@ -391,7 +539,7 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @return {@link Set} of {@link Locale}s.
      */
     public Set<Locale> getLocales() {
-        return Collections.unmodifiableSet(map.keySet());
+        return locales();
     }
 
     /**
@@ -404,8 +552,9 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      */
     public void forEach(BiConsumer<Locale, String> action) {
         Objects.requireNonNull(action);
-        for (Entry<Locale, String> entry : map.entrySet()) {
-            action.accept(entry.getKey(), entry.getValue());
+        String[] values = values();
+        for (int i = 0; i < values.length; i++) {
+            action.accept(locales.locale(i), values[i]);
         }
     }
 
@@ -421,7 +570,13 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      *         predicate, {@code false} otherwise.
      */
     public boolean anyMatch(Predicate<String> predicate) {
-        return map.values().stream().anyMatch(predicate);
+        String[] values = values();
+        for (String value : values) {
+            if (predicate.test(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -453,11 +608,16 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      */
     public LocalizedString map(Function<String, String> mappingFunction) {
         Objects.requireNonNull(mappingFunction);
-        Builder builder = builder();
-        for (Entry<Locale, String> entry : map.entrySet()) {
-            builder.with(entry.getKey(), mappingFunction.apply(entry.getValue()));
+        String[] values = values();
+        String[] mapped = values.clone();
+        for (int i = 0; i < values.length; i++) {
+            String value = mappingFunction.apply(values[i]);
+            // Same as Builder.with, empty results keep the previous translation
+            if (!Strings.isNullOrEmpty(value)) {
+                mapped[i] = value;
+            }
         }
-        return builder.build();
+        return of(locales, mapped);
     }
 
     /**
@@ -472,11 +632,65 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * <li>Returns the translation for the thread's {@link Locale} if exists, otherwise null is returned.</li>
      * </ul>
      * 
+     * All but the last step can be replaced with {@link #setFallbackStrategy(LocaleFallbackStrategy)}.
+     * 
      * @param locale the {@link Locale} to fetch.
      * @return the best possible translation, can be null.
      */
     public String getContent(Locale locale) {
-        return map.getContent(locale);
+        return getContent(locale, null);
+    }
+
+    /**
+     * Sets the strategy choosing the translation returned by {@link #getContent(Locale)} and {@link #getContent()} for locales
+     * without an exact match, for all {@link LocalizedString}s. Meant to be set once, at startup: changing it discards the
+     * choices already computed with the previous strategy.
+     * 
+     * @param strategy the strategy to use
+     */
+    public static void setFallbackStrategy(LocaleFallbackStrategy strategy) {
+        fallbackStrategy = Objects.requireNonNull(strategy);
+    }
+
+    /**
+     * @return the strategy in use, {@link LocaleFallbackStrategy#DEFAULT} unless set otherwise
+     */
+    public static LocaleFallbackStrategy getFallbackStrategy() {
+        return fallbackStrategy;
+    }
+
+    /**
+     * Same as {@link #getContent(Locale)}, using the given locale instead of the thread's {@link Locale} (if not null) as the
+     * last fallback.
+     */
+    private String getContent(Locale locale, Locale current) {
+        Object content = this.content;
+        if (content instanceof LazyJson && !((LazyJson) content).scanned) {
+            LazyJson lazy = (LazyJson) content;
+            lazy.scanned = true;
+            String found = lazy.find(locale);
+            if (found != null) {
+                return found;
+            }
+        }
+        String[] values = values();
+        int index = indexFor(locales, locale, current);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * Position, among the given locales, of the translation returned by {@link #getContent(Locale, Locale)}, or a negative
+     * value if none.
+     */
+    static int indexFor(LocaleSet locales, Locale locale, Locale current) {
+        int index = locales.resolve(locale);
+        if (index == LocaleSet.NO_MATCH) {
+            Locale fallback = current == null ? I18N.getLocale() : current;
+            if (!locale.equals(fallback)) {
+                return indexFor(locales, fallback, fallback);
+            }
+        }
+        return index;
     }
 
     /**
@@ -497,12 +711,20 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link #getContent(Locale)}
      */
     public String getContent() {
-        String text = getContent(I18N.getLocale());
+        return getContentAs(I18N.getLocale());
+    }
+
+    /**
+     * Same as {@link #getContent()}, as if the given locale was the thread's {@link Locale}.
+     */
+    private String getContentAs(Locale current) {
+        String text = getContent(current, current);
         if (text == null) {
-            text = getContent(Locale.getDefault());
+            text = getContent(Locale.getDefault(), current);
         }
-        if (text == null && !map.isEmpty()) {
-            text = map.values().iterator().next();
+        String[] values = values();
+        if (text == null && values.length > 0) {
+            text = values[0];
         }
         return text;
     }
@@ -511,7 +733,7 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @return true if contains no translations
      */
     public boolean isEmpty() {
-        return map.isEmpty();
+        return values().length == 0;
     }
 
     /**
@@ -521,7 +743,12 @@ public final class LocalizedString implements Serializable, Comparable<Localized
      * @see {@link #fromJson(JsonElement)}
      */
     public JsonElement json() {
-        return map.json();
+        String[] values = values();
+        JsonObject json = new JsonObject();
+        for (int i = 0; i < values.length; i++) {
+            json.addProperty(locales.tag(i), values[i]);
+        }
+        return json;
     }
 
     /**
@@ -535,9 +762,106 @@ public final class LocalizedString implements Serializable, Comparable<Localized
         return InternalMap.fromJson(json);
     }
 
+    /**
+     * Import from json text, decoding it only when needed. The first {@link #getContent(Locale)} only scans the json for the
+     * requested translation, the json is fully decoded, as in {@link #fromJson(JsonElement)}, only when the whole string is
+     * required or the requested translation is not found. Malformed json is reported only when decoded.
+     * 
+     * @param json the json text in the same format returned by {@link #json()}.
+     * @return the {@link LocalizedString}, behaving exactly as the one returned by {@link #fromJson(JsonElement)}.
+     */
+    public static LocalizedString lazyFromJson(String json) {
+        return new LocalizedString(new LazyJson(Objects.requireNonNull(json)));
+    }
+
+    /**
+     * Same as {@link #lazyFromJson(String)}, for json text encoded in UTF-8.
+     * 
+     * @param json the UTF-8 encoded json text in the same format returned by {@link #json()}.
+     * @return the {@link LocalizedString}, behaving exactly as the one returned by {@link #fromJson(JsonElement)}.
+     */
+    public static LocalizedString lazyFromJson(byte[] json) {
+        return new LocalizedString(new LazyJson(Objects.requireNonNull(json)));
+    }
+
+    private String[] decode(LazyJson lazy) {
+        LocalizedString decoded = fromJson(new JsonParser().parse(lazy.text()));
+        String[] values = decoded.values();
+        this.locales = decoded.locales;
+        this.content = values;
+        return values;
+    }
+
+    private static final class LazyJson {
+        private final Object json;
+        private boolean scanned = false;
+
+        private LazyJson(Object json) {
+            this.json = json;
+        }
+
+        private String text() {
+            return json instanceof String ? (String) json : new String((byte[]) json, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Finds the translation that {@link LocalizedString#fromJson(JsonElement)} would keep for exactly the given locale.
+         * As in {@link JsonObject}, a repeated key keeps its first position and its last value, and as in
+         * {@link Builder#with(Locale, String)}, empty values are ignored.
+         */
+        private String find(Locale locale) {
+            try (JsonReader reader = new JsonReader(json instanceof String ? new StringReader((String) json)
+                    : new InputStreamReader(new ByteArrayInputStream((byte[]) json), StandardCharsets.UTF_8))) {
+                Map<String, String> matches = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (locale.equals(LocaleRegistry.forLanguageTag(key))) {
+                        if (matches == null) {
+                            matches = new LinkedHashMap<>(4);
+                        }
+                        matches.put(key, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                String found = null;
+                if (matches != null) {
+                    for (String value : matches.values()) {
+                        found = Strings.isNullOrEmpty(value) ? found : value;
+                    }
+                }
+                return found;
+            } catch (IOException | RuntimeException e) {
+                // Let the full decoding report it
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes the same json as {@link #json()}, directly to the given writer.
+     */
+    void write(JsonWriter out) throws IOException {
+        String[] values = values();
+        out.beginObject();
+        for (int i = 0; i < values.length; i++) {
+            out.name(locales.tag(i)).value(values[i]);
+        }
+        out.endObject();
+    }
+
     @Override
     public String toString() {
-        return map.toString();
+        String[] values = values();
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(locales.locale(i)).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
     }
 
     @Override
@@ -546,17 +870,138 @@ public final class LocalizedString implements Serializable, Comparable<Localized
                 other.isEmpty() ? "" : other.getContent());
     }
 
+    /**
+     * Returns a comparator ordering {@link LocalizedString}s as {@link #compareTo(LocalizedString)} does when the thread's
+     * {@link Locale} is the given one. A {@link CollationKey} is computed only once for each distinct string and kept for the
+     * lifetime of the comparator, so it should be used for a given sort and then discarded.
+     * 
+     * @param locale the {@link Locale} in which strings are compared
+     * @return the comparator
+     * @see #sort(List, Locale)
+     */
+    public static Comparator<LocalizedString> comparator(Locale locale) {
+        Collator collator = Collator.getInstance(locale);
+        Map<LocalizedString, CollationKey> keys = new ConcurrentHashMap<>();
+        return (one, other) -> keys.computeIfAbsent(one, string -> string.collationKey(collator, locale))
+                .compareTo(keys.computeIfAbsent(other, string -> string.collationKey(collator, locale)));
+    }
+
+    /**
+     * Sorts the given list in the order of {@link #compareTo(LocalizedString)} when the thread's {@link Locale} is the given
+     * one. The sort is stable and computes a single {@link CollationKey} per element.
+     * 
+     * @param list the list to be sorted
+     * @param locale the {@link Locale} in which strings are compared
+     */
+    public static void sort(List<LocalizedString> list, Locale locale) {
+        Collator collator = Collator.getInstance(locale);
+        Keyed[] keyed = new Keyed[list.size()];
+        int i = 0;
+        for (LocalizedString string : list) {
+            keyed[i++] = new Keyed(string.collationKey(collator, locale), string);
+        }
+        Arrays.sort(keyed);
+        ListIterator<LocalizedString> iterator = list.listIterator();
+        for (Keyed element : keyed) {
+            iterator.next();
+            iterator.set(element.string);
+        }
+    }
+
+    private CollationKey collationKey(Collator collator, Locale locale) {
+        return collator.getCollationKey(isEmpty() ? "" : getContentAs(locale));
+    }
+
+    private static final class Keyed implements Comparable<Keyed> {
+        private final CollationKey key;
+        private final LocalizedString string;
+
+        private Keyed(CollationKey key, LocalizedString string) {
+            this.key = key;
+            this.string = string;
+        }
+
+        @Override
+        public int compareTo(Keyed other) {
+            return key.compareTo(other.key);
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj instanceof LocalizedString) {
             LocalizedString i18NString = (LocalizedString) obj;
-            return map.equals(i18NString.map);
+            String[] values = values();
+            String[] others = i18NString.values();
+            if (values.length != others.length || locales != i18NString.locales) {
+                return false;
+            }
+            int hash = this.hash;
+            int otherHash = i18NString.hash;
+            if (hash != 0 && otherHash != 0 && hash != otherHash) {
+                return false;
+            }
+            return Arrays.equals(values, others);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return map.hashCode();
+        int hash = this.hash;
+        if (hash == 0) {
+            /*
+             * Translations of the same string tend to share suffixes (e.g. numbers), so a commutative combination of their
+             * hash codes, as in Map.hashCode, collides a lot. Locales are in canonical order, so an ordered one can be used.
+             */
+            String[] values = values();
+            for (int i = 0; i < values.length; i++) {
+                hash = 31 * (31 * hash + locales.locale(i).hashCode()) + values[i].hashCode();
+            }
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the content of this string in the format described in {@link LocalizedStringSer}.
+     */
+    void writeTo(ObjectOutput out) throws IOException {
+        String[] values = values();
+        LocalizedStringSer.writeVarInt(out, values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeObject(locales.tag(i));
+            LocalizedStringSer.writeText(out, values[i]);
+        }
+    }
+
+    static LocalizedString readFrom(ObjectInput in) throws IOException, ClassNotFoundException {
+        int size = LocalizedStringSer.readVarInt(in);
+        Builder builder = new Builder();
+        for (int i = 0; i < size; i++) {
+            builder.with(LocaleRegistry.forLanguageTag((String) in.readObject()), LocalizedStringSer.readText(in));
+        }
+        return builder.build();
+    }
+
+    private Object writeReplace() {
+        return new LocalizedStringSer(this);
+    }
+
+    /*
+     * Streams written by previous versions, before LocalizedStringSer, contain the "map" field instead.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        InternalMap map = (InternalMap) in.readFields().get("map", null);
+        LocalizedString string = map == null ? new LocalizedString() : of(map);
+        this.locales = string.locales;
+        this.content = string.content;
+    }
+
+    private Object readResolve() {
+        return LocalizedStringPool.intern(this);
     }
 }
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.IllformedLocaleException;
+import java.util.Locale;
+
+/**
+ * <p>
+ * Compact binary encoding of {@link LocalizedString}s, meant to be stored in database columns instead of the json returned by
+ * {@link LocalizedString#json()}.
+ * </p>
+ *
+ * <p>
+ * The encoding starts with the {@link #MAGIC} byte, followed by the number of translations and, for each one, its locale and
+ * its UTF-8 encoded text prefixed by its length. Locales are written as their position in a table of well-known locales
+ * (plus one), or as zero followed by the length and the ASCII bytes of their language tag. All numbers are written as unsigned
+ * variable length integers, 7 bits per byte.
+ * </p>
+ *
+ * <p>
+ * While migrating existing data, use {@link #decode(byte[])} or {@link #decode(ByteBuffer)}, which also accept the UTF-8
+ * encoded json format.
+ * </p>
+ */
+public final class LocalizedStringCodec {
+
+    /**
+     * First byte of every binary encoded {@link LocalizedString}. It never starts a UTF-8 encoded json text.
+     */
+    public static final byte MAGIC = (byte) 0xF5;
+
+    /*
+     * Persisted as indexes, so this table must never be reordered. New locales can only be added at the end.
+     */
+    private static final Locale[] WELL_KNOWN = { Locale.forLanguageTag("pt-PT"), Locale.forLanguageTag("en-GB"),
+            Locale.forLanguageTag("pt"), Locale.forLanguageTag("en"), Locale.forLanguageTag("pt-BR"),
+            Locale.forLanguageTag("en-US"), Locale.forLanguageTag("es-ES"), Locale.forLanguageTag("es"),
+            Locale.forLanguageTag("fr-FR"), Locale.forLanguageTag("fr"), Locale.forLanguageTag("de-DE"),
+            Locale.forLanguageTag("de"), Locale.forLanguageTag("it-IT"), Locale.forLanguageTag("it") };
+
+    private LocalizedStringCodec() {
+    }
+
+    /**
+     * Encodes the given string in the binary format.
+     *
+     * @param string the string to encode
+     * @return a new array with the encoded string
+     */
+    public static byte[] encode(LocalizedString string) {
+        byte[][] texts = texts(string);
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(string, texts));
+        encode(string, texts, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the given string in the binary format, at the current position of the buffer.
+     *
+     * @param string the string to encode
+     * @param buffer the destination buffer
+     * @throws java.nio.BufferOverflowException if there is not enough space left in the buffer
+     */
+    public static void encode(LocalizedString string, ByteBuffer buffer) {
+        encode(string, texts(string), buffer);
+    }
+
+    /**
+     * Decodes a string in either the binary format or the json format, encoded in UTF-8.
+     *
+     * @param bytes the encoded string
+     * @return the decoded string
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static LocalizedString decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a string in either the binary format or the json format, encoded in UTF-8, from the current position of the
+     * buffer. For the binary format, the buffer is left positioned after the encoded string, otherwise it is consumed.
+     *
+     * @param buffer the buffer holding the encoded string
+     * @return the decoded string
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static LocalizedString decode(ByteBuffer buffer) {
+        if (buffer.hasRemaining() && buffer.get(buffer.position()) == MAGIC) {
+            try {
+                buffer.get();
+                return decodeBinary(buffer);
+            } catch (BufferUnderflowException | IllformedLocaleException e) {
+                throw new IllegalArgumentException("Invalid binary LocalizedString", e);
+            }
+        }
+        return decodeJson(buffer);
+    }
+
+    private static byte[][] texts(LocalizedString string) {
+        String[] values = string.values();
+        byte[][] texts = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return texts;
+    }
+
+    private static int encodedSize(LocalizedString string, byte[][] texts) {
+        int size = 1 + varIntSize(texts.length);
+        for (Locale locale : string.getLocales()) {
+            int code = code(locale);
+            size += varIntSize(code);
+            if (code == 0) {
+                int length = locale.toLanguageTag().length();
+                size += varIntSize(length) + length;
+            }
+        }
+        for (byte[] text : texts) {
+            size += varIntSize(text.length) + text.length;
+        }
+        return size;
+    }
+
+    private static void encode(LocalizedString string, byte[][] texts, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        putVarInt(buffer, texts.length);
+        int i = 0;
+        for (Locale locale : string.getLocales()) {
+            int code = code(locale);
+            putVarInt(buffer, code);
+            if (code == 0) {
+                String tag = locale.toLanguageTag();
+                putVarInt(buffer, tag.length());
+                for (int c = 0; c < tag.length(); c++) {
+                    buffer.put((byte) tag.charAt(c));
+                }
+            }
+            putVarInt(buffer, texts[i].length);
+            buffer.put(texts[i++]);
+        }
+    }
+
+    private static LocalizedString decodeBinary(ByteBuffer buffer) {
+        int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid binary LocalizedString, too many translations: " + count);
+        }
+        Locale[] locales = new Locale[count];
+        String[] values = new String[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int code = getVarInt(buffer);
+            Locale locale;
+            if (code == 0) {
+                locale = LocaleRegistry.forLanguageTag(getString(buffer, StandardCharsets.US_ASCII));
+            } else if (code > 0 && code <= WELL_KNOWN.length) {
+                locale = WELL_KNOWN[code - 1];
+            } else {
+                throw new IllegalArgumentException("Invalid binary LocalizedString, unknown locale code: " + code);
+            }
+            String value = getString(buffer, StandardCharsets.UTF_8);
+            // Same as Builder.with, empty translations are ignored
+            if (!value.isEmpty()) {
+                locales[size] = locale;
+                values[size++] = value;
+            }
+        }
+        return LocalizedStringPool.intern(LocalizedString.of(locales, values, size));
+    }
+
+    private static LocalizedString decodeJson(ByteBuffer buffer) {
+        byte[] bytes;
+        int offset;
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+        } else {
+            bytes = new byte[length];
+            offset = 0;
+            buffer.duplicate().get(bytes);
+        }
+        buffer.position(buffer.limit());
+        try {
+            LocalizedString string = LocalizedStringTypeAdapter.INSTANCE.fromJson(new InputStreamReader(new ByteArrayInputStream(
+                    bytes, offset, length), StandardCharsets.UTF_8));
+            if (string == null) {
+                throw new IllegalArgumentException("Neither binary nor json LocalizedString");
+            }
+            return string;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Neither binary nor json LocalizedString", e);
+        }
+    }
+
+    private static int code(Locale locale) {
+        for (int i = 0; i < WELL_KNOWN.length; i++) {
+            if (WELL_KNOWN[i].equals(locale)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static String getString(ByteBuffer buffer, Charset charset) {
+        int length = getVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            string = new String(bytes, charset);
+        }
+        return string;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid binary LocalizedString, malformed variable length integer");
+    }
+}
@@ -0,0 +1,482 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.fenixedu.commons.StringNormalizer;
+
+/**
+ * <p>
+ * In-memory prefix search over the translations of a collection of values described by {@link LocalizedString}s, meant for
+ * autocompletion.
+ * </p>
+ *
+ * <p>
+ * Every translation is normalized with {@link StringNormalizer#normalize(String)} and split into alphanumeric words. A value
+ * matches a query if, in one of its translations, every word of the (equally normalized) query is a prefix of some word. So
+ * <code>"eng inf"</code> matches <code>"Engenharia Informática"</code>. Results are ranked first by values with a matching
+ * translation whose first word starts with the first word of the query, then by values with fewer words, then by insertion
+ * order.
+ * </p>
+ *
+ * <p>
+ * Words are kept in sorted arrays, each pointing to a slice of a single array of postings, so a prefix is a binary search away
+ * from all the values containing it. Values are numbered in ranking order, so a search only checks candidates until enough
+ * results are found. Values added after the last build are searched linearly, and removed values are skipped, until enough of
+ * them accumulate to rebuild the arrays.
+ * </p>
+ *
+ * <p>
+ * Instances are thread-safe, searches and updates are serialized.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * LocalizedStringIndex&lt;Degree&gt; index = new LocalizedStringIndex&lt;&gt;(Degree::getName);
+ * index.addAll(degrees);
+ * List&lt;Degree&gt; suggestions = index.search("eng inf", 10);
+ * </code>
+ * </pre>
+ *
+ * @param <T> the type of the indexed values
+ */
+public final class LocalizedStringIndex<T> {
+
+    private static final int MIN_REBUILD_THRESHOLD = 256;
+
+    private static final String[] NO_WORDS = new String[0];
+
+    private static final long STARTS_WITH_QUERY = 0;
+
+    private static final long OTHER = 1L << 62;
+
+    private final Function<? super T, LocalizedString> extractor;
+
+    private final Map<T, Integer> ids = new HashMap<>();
+
+    /*
+     * Indexed entries by id, null once removed. Entries up to built are in ranking order, the ones after were added since.
+     */
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    private int built = 0;
+
+    private int removed = 0;
+
+    /*
+     * All the words of each entry, and just the first word of each translation.
+     */
+    private Postings words = Postings.EMPTY;
+
+    private Postings firstWords = Postings.EMPTY;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param extractor the function returning the {@link LocalizedString} to index for each value
+     */
+    public LocalizedStringIndex(Function<? super T, LocalizedString> extractor) {
+        this.extractor = Objects.requireNonNull(extractor);
+    }
+
+    /**
+     * Creates an index over the given strings, which are also the search results.
+     *
+     * @param strings the strings to index
+     * @return the index
+     */
+    public static LocalizedStringIndex<LocalizedString> of(Collection<LocalizedString> strings) {
+        LocalizedStringIndex<LocalizedString> index = new LocalizedStringIndex<>(Function.identity());
+        index.addAll(strings);
+        return index;
+    }
+
+    /**
+     * Adds the given value to the index, or re-indexes it if already present, for instance after its name changed.
+     *
+     * @param value the value to add
+     */
+    public synchronized void add(T value) {
+        insert(value);
+        if (entries.size() - built > Math.max(MIN_REBUILD_THRESHOLD, ids.size() / 128)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Adds all the given values, as in {@link #add(Object)}, rebuilding the index only once.
+     *
+     * @param values the values to add
+     */
+    public synchronized void addAll(Collection<? extends T> values) {
+        for (T value : values) {
+            insert(value);
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes the given value from the index.
+     *
+     * @param value the value to remove
+     * @return true if the value was indexed
+     */
+    public synchronized boolean remove(T value) {
+        Integer id = ids.remove(value);
+        if (id == null) {
+            return false;
+        }
+        entries.set(id, null);
+        removed++;
+        if (removed > Math.max(MIN_REBUILD_THRESHOLD, ids.size() / 4)) {
+            rebuild();
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of indexed values
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    /**
+     * Searches the translations in every locale.
+     *
+     * @param query the text to search, as typed by the user
+     * @param limit the maximum number of results
+     * @return the best matching values, best first
+     */
+    public List<T> search(String query, int limit) {
+        return search(query, null, limit);
+    }
+
+    /**
+     * Searches only the translations in the given locale, if not null, or in every locale otherwise.
+     *
+     * @param query the text to search, as typed by the user
+     * @param locale the locale of the translations to search, exactly as in {@link LocalizedString#getLocales()}
+     * @param limit the maximum number of results
+     * @return the best matching values, best first
+     */
+    public synchronized List<T> search(String query, Locale locale, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        String[] tokens = tokenize(StringNormalizer.normalize(query));
+        int localeId = locale == null ? -1 : LocaleRegistry.find(locale);
+        if (tokens.length == 0 || limit == 0 || locale != null && localeId < 0) {
+            return Collections.emptyList();
+        }
+        Search search = new Search(tokens, localeId, limit);
+
+        // Built entries are numbered in ranking order, so the first matches found are the best ones
+        search.collect(firstWords.candidates(tokens[0], built), STARTS_WITH_QUERY);
+        if (search.size() < limit) {
+            String driver = tokens[0];
+            for (String token : tokens) {
+                if (words.count(token) < words.count(driver)) {
+                    driver = token;
+                }
+            }
+            search.collect(words.candidates(driver, built), OTHER);
+        }
+        for (int id = built; id < entries.size(); id++) {
+            search.add(search.rank(entries.get(id), id));
+        }
+        return search.results();
+    }
+
+    private void insert(T value) {
+        LocalizedString string = Objects.requireNonNull(extractor.apply(value), "Cannot index a null LocalizedString");
+        Integer previous = ids.put(value, entries.size());
+        if (previous != null) {
+            entries.set(previous, null);
+            removed++;
+        }
+        String[] values = string.values();
+        String[][] tokens = new String[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            tokens[i] = tokenize(StringNormalizer.normalize(values[i]));
+        }
+        entries.add(new Entry<>(value, string.locales(), tokens));
+    }
+
+    private void rebuild() {
+        List<Entry<T>> live = new ArrayList<>(ids.size());
+        for (Entry<T> entry : entries) {
+            if (entry != null) {
+                live.add(entry);
+            }
+        }
+        // Stable, so insertion order is kept among entries with the same number of words
+        live.sort(Comparator.comparingInt(entry -> entry.length));
+        entries.clear();
+        entries.addAll(live);
+        for (int id = 0; id < entries.size(); id++) {
+            ids.put(entries.get(id).value, id);
+        }
+        built = entries.size();
+        removed = 0;
+
+        Map<String, PostingList> all = new HashMap<>();
+        Map<String, PostingList> first = new HashMap<>();
+        for (int id = 0; id < entries.size(); id++) {
+            for (String[] tokens : entries.get(id).tokens) {
+                for (String token : tokens) {
+                    all.computeIfAbsent(token, t -> new PostingList()).add(id);
+                }
+                if (tokens.length > 0) {
+                    first.computeIfAbsent(tokens[0], t -> new PostingList()).add(id);
+                }
+            }
+        }
+        words = new Postings(all);
+        firstWords = new Postings(first);
+    }
+
+    private static String[] tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean alphanumeric = i < normalized.length() && isAlphanumeric(normalized.charAt(i));
+            if (alphanumeric && start < 0) {
+                start = i;
+            } else if (!alphanumeric && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.isEmpty() ? NO_WORDS : tokens.toArray(new String[tokens.size()]);
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9';
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final LocaleSet locales;
+        private final String[][] tokens;
+
+        /*
+         * Number of words of the shortest translation
+         */
+        private final int length;
+
+        private Entry(T value, LocaleSet locales, String[][] tokens) {
+            this.value = value;
+            this.locales = locales;
+            this.tokens = tokens;
+            int length = Integer.MAX_VALUE;
+            for (String[] words : tokens) {
+                length = Math.min(length, words.length);
+            }
+            this.length = Math.min(length, 0xFFFF);
+        }
+    }
+
+    private static final class PostingList {
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        /**
+         * Adds the given id, unless it was the last one added.
+         */
+        private void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Sorted words, each with the ids of the entries containing it. The ids of terms[i] are ids[offsets[i]] until
+     * ids[offsets[i + 1]], in ascending order.
+     */
+    private static final class Postings {
+        private static final Postings EMPTY = new Postings(Collections.emptyMap());
+
+        private final String[] terms;
+        private final int[] offsets;
+        private final int[] ids;
+
+        private Postings(Map<String, PostingList> lists) {
+            this.terms = lists.keySet().toArray(new String[lists.size()]);
+            Arrays.sort(terms);
+            this.offsets = new int[terms.length + 1];
+            int total = 0;
+            for (PostingList list : lists.values()) {
+                total += list.size;
+            }
+            this.ids = new int[total];
+            int offset = 0;
+            for (int t = 0; t < terms.length; t++) {
+                offsets[t] = offset;
+                PostingList list = lists.get(terms[t]);
+                System.arraycopy(list.ids, 0, ids, offset, list.size);
+                offset += list.size;
+            }
+            offsets[terms.length] = offset;
+        }
+
+        /**
+         * Number of postings of the words starting with the given prefix.
+         */
+        private int count(String prefix) {
+            return offsets[lowerBound(prefix + Character.MAX_VALUE)] - offsets[lowerBound(prefix)];
+        }
+
+        /**
+         * Bit set of the ids of the entries with words starting with the given prefix.
+         */
+        private long[] candidates(String prefix, int size) {
+            long[] bits = new long[size + 63 >>> 6];
+            int to = offsets[lowerBound(prefix + Character.MAX_VALUE)];
+            for (int i = offsets[lowerBound(prefix)]; i < to; i++) {
+                bits[ids[i] >>> 6] |= 1L << ids[i];
+            }
+            return bits;
+        }
+
+        /**
+         * Position of the first term not smaller than the given one.
+         */
+        private int lowerBound(String term) {
+            int low = 0;
+            int high = terms.length;
+            while (low < high) {
+                int middle = low + high >>> 1;
+                if (terms[middle].compareTo(term) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final class Search {
+        private final String[] tokens;
+        private final int localeId;
+        private final int limit;
+
+        /*
+         * Ranks of the results found so far, lower is better. The low 32 bits are the entry id.
+         */
+        private long[] ranks = new long[8];
+        private int size = 0;
+
+        private Search(String[] tokens, int localeId, int limit) {
+            this.tokens = tokens;
+            this.localeId = localeId;
+            this.limit = limit;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * Adds the candidates of the given class in id order, until the limit is reached.
+         */
+        private void collect(long[] candidates, long rankClass) {
+            for (int word = 0; word < candidates.length && size < limit; word++) {
+                long bits = candidates[word];
+                while (bits != 0 && size < limit) {
+                    int id = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    long rank = rank(entries.get(id), id);
+                    if ((rank & OTHER) == rankClass) {
+                        add(rank);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Rank of the given entry for this search, or -1 if it does not match.
+         */
+        private long rank(Entry<T> entry, int id) {
+            if (entry == null) {
+                return -1;
+            }
+            long rankClass = -1;
+            for (int i = 0; i < entry.tokens.length && rankClass != STARTS_WITH_QUERY; i++) {
+                String[] candidates = entry.tokens[i];
+                if ((localeId < 0 || entry.locales.id(i) == localeId) && matches(candidates)) {
+                    rankClass = candidates[0].startsWith(tokens[0]) ? STARTS_WITH_QUERY : OTHER;
+                }
+            }
+            return rankClass < 0 ? -1 : rankClass | (long) entry.length << 32 | id;
+        }
+
+        private boolean matches(String[] candidates) {
+            for (String token : tokens) {
+                boolean found = false;
+                for (String candidate : candidates) {
+                    if (candidate.startsWith(token)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long rank) {
+            if (rank < 0) {
+                return;
+            }
+            if (size == ranks.length) {
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            ranks[size++] = rank;
+        }
+
+        private List<T> results() {
+            Arrays.sort(ranks, 0, size);
+            List<T> results = new ArrayList<>(Math.min(size, limit));
+            for (int i = 0; i < size && i < limit; i++) {
+                results.add(entries.get((int) ranks[i]).value);
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Opt-in deduplication of {@link LocalizedString} instances and of their translations. When enabled, every
+ * {@link LocalizedString} created by {@link LocalizedString.Builder#build()}, {@link LocalizedString#fromJson} or
+ * deserialization is replaced by an equal instance already in the pool, if any.
+ * </p>
+ *
+ * <p>
+ * The pool is bounded and lossy: each table has a fixed number of slots holding weak references, and a new entry simply
+ * replaces whatever was in its slot. It never prevents garbage collection and never grows, at the cost of missing some
+ * duplicates.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * LocalizedStringPool.enable(1 &lt;&lt; 16);
+ * ...
+ * logger.info("{}", LocalizedStringPool.getStatistics());
+ * </code>
+ * </pre>
+ */
+public final class LocalizedStringPool {
+
+    private static volatile Pool pool;
+
+    private LocalizedStringPool() {
+    }
+
+    /**
+     * Enables the pool, discarding any previous pool and its statistics.
+     *
+     * @param capacity number of slots of each table, rounded up to a power of two
+     */
+    public static void enable(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid pool capacity: " + capacity);
+        }
+        pool = new Pool(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+    }
+
+    /**
+     * Disables the pool, releasing all its entries.
+     */
+    public static void disable() {
+        pool = null;
+    }
+
+    public static boolean isEnabled() {
+        return pool != null;
+    }
+
+    /**
+     * Returns an instance equal to the given one, from the pool if possible. Returns the argument if the pool is disabled.
+     *
+     * @param string the instance to intern
+     * @return a pooled instance equal to the given one
+     */
+    public static LocalizedString intern(LocalizedString string) {
+        Pool current = pool;
+        return current == null ? string : current.strings.intern(string);
+    }
+
+    /**
+     * Returns a translation equal to the given one, from the pool if possible. Returns the argument if the pool is disabled.
+     *
+     * @param value the translation to intern
+     * @return a pooled translation equal to the given one
+     */
+    public static String intern(String value) {
+        Pool current = pool;
+        return current == null || value == null ? value : current.values.intern(value);
+    }
+
+    /**
+     * @return the statistics of the current pool, all zero if disabled
+     */
+    public static Statistics getStatistics() {
+        Pool current = pool;
+        return current == null ? new Statistics(0, 0, 0) : current.statistics();
+    }
+
+    /**
+     * Snapshot of the pool usage. Saved bytes are estimated from the shallow size of the discarded duplicates, assuming
+     * compressed references and compact strings.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long bytesSaved;
+
+        private Statistics(long hits, long misses, long bytesSaved) {
+            this.hits = hits;
+            this.misses = misses;
+            this.bytesSaved = bytesSaved;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LocalizedStringPool[hits=%d, misses=%d, hitRatio=%.3f, bytesSaved=%d]", hits, misses,
+                    getHitRatio(), bytesSaved);
+        }
+    }
+
+    private static final class Pool {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder bytesSaved = new LongAdder();
+
+        private final Table<LocalizedString> strings;
+        private final Table<String> values;
+
+        private Pool(int capacity) {
+            this.strings = new Table<LocalizedString>(capacity) {
+                @Override
+                long sizeOf(LocalizedString string) {
+                    // Object header and two references, plus the array of values
+                    return 24 + align(16 + 4 * string.getLocales().size());
+                }
+            };
+            this.values = new Table<String>(capacity) {
+                @Override
+                long sizeOf(String value) {
+                    int bytesPerChar = 1;
+                    for (int i = 0; i < value.length(); i++) {
+                        if (value.charAt(i) > 0xFF) {
+                            bytesPerChar = 2;
+                            break;
+                        }
+                    }
+                    return 24 + align(16 + bytesPerChar * value.length());
+                }
+            };
+        }
+
+        private Statistics statistics() {
+            return new Statistics(hits.sum(), misses.sum(), bytesSaved.sum());
+        }
+
+        private abstract class Table<T> {
+            private final AtomicReferenceArray<WeakReference<T>> slots;
+
+            private Table(int capacity) {
+                this.slots = new AtomicReferenceArray<>(capacity);
+            }
+
+            abstract long sizeOf(T object);
+
+            T intern(T object) {
+                int hash = object.hashCode();
+                int slot = (hash ^ hash >>> 16) & slots.length() - 1;
+                WeakReference<T> reference = slots.get(slot);
+                T pooled = reference == null ? null : reference.get();
+                if (pooled != null && pooled.equals(object)) {
+                    if (pooled != object) {
+                        hits.increment();
+                        bytesSaved.add(sizeOf(object));
+                    }
+                    return pooled;
+                }
+                misses.increment();
+                slots.set(slot, new WeakReference<>(object));
+                return object;
+            }
+        }
+    }
+
+    private static long align(long size) {
+        return size + 7 & ~7;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Serialized form of {@link LocalizedString}, written in its place by {@link LocalizedString}'s <code>writeReplace</code>.
+ * </p>
+ *
+ * <p>
+ * The format is a version byte, followed by the number of translations and, for each one, its language tag and its UTF-8
+ * encoded text prefixed by its length. Language tags are written as objects, so that every occurrence after the first one in
+ * the same stream is just a reference to the previous one. Lengths are written as variable length integers.
+ * </p>
+ */
+final class LocalizedStringSer implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private static final byte VERSION = 1;
+
+    /*
+     * Texts longer than this are read in chunks of this size, rather than allocated with the length read from the stream.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private LocalizedString string;
+
+    /**
+     * For deserialization only.
+     */
+    public LocalizedStringSer() {
+    }
+
+    LocalizedStringSer(LocalizedString string) {
+        this.string = string;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        string.writeTo(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException("Unknown LocalizedString serialization version: " + version);
+        }
+        this.string = LocalizedString.readFrom(in);
+    }
+
+    private Object readResolve() {
+        return string;
+    }
+
+    static void writeText(ObjectOutput out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readText(ObjectInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0) {
+            throw new InvalidObjectException("Negative text length: " + length);
+        }
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        // A corrupted length fails when the stream ends, after reading no more than it holds
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE * 2);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = length; remaining > 0;) {
+            int read = Math.min(remaining, CHUNK_SIZE);
+            in.readFully(chunk, 0, read);
+            bytes.write(chunk, 0, read);
+            remaining -= read;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Malformed variable length integer");
+    }
+}
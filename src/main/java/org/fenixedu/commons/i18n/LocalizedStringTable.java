@@ -0,0 +1,354 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>
+ * Immutable, column oriented, list of {@link LocalizedString}s, meant for large collections such as reports and catalog caches.
+ * </p>
+ *
+ * <p>
+ * Translations are stored in one array per locale, indexed by row, instead of one object per element. Each row also records
+ * which locales it has, as an index into the distinct sets of locales present in the table. Rows are materialized as
+ * {@link LocalizedString}s only when requested, sharing the stored translations.
+ * </p>
+ *
+ * <p>
+ * Whole columns are read with {@link #getContents(Locale)} and {@link #getContents()}, which return exactly what
+ * {@link LocalizedString#getContent(Locale)} and {@link LocalizedString#getContent()} would for each row, resolving the locale
+ * fallback once per distinct set of locales instead of once per row.
+ * </p>
+ *
+ * <pre>
+ * <code>
+ * LocalizedStringTable names = LocalizedStringTable.of(courses.stream().map(Course::getName).collect(Collectors.toList()));
+ * String[] englishNames = names.getContents(Locale.ENGLISH);
+ * </code>
+ * </pre>
+ */
+public final class LocalizedStringTable implements Iterable<LocalizedString> {
+
+    private final int size;
+
+    /*
+     * Locales of the columns, and columns of translations indexed by row, null where the row has no translation.
+     */
+    private final Locale[] locales;
+
+    private final String[][] columns;
+
+    /*
+     * Index of the set of locales of each row, and for each such set, the column of each of its locales.
+     */
+    private final int[] shapes;
+
+    private final LocaleSet[] shapeLocales;
+
+    private final int[][] shapeColumns;
+
+    private LocalizedStringTable(int size, Locale[] locales, String[][] columns, int[] shapes, LocaleSet[] shapeLocales,
+            int[][] shapeColumns) {
+        this.size = size;
+        this.locales = locales;
+        this.columns = columns;
+        this.shapes = shapes;
+        this.shapeLocales = shapeLocales;
+        this.shapeColumns = shapeColumns;
+    }
+
+    /**
+     * Creates a table with the given strings, in the same order.
+     *
+     * @param strings the strings to store
+     * @return the table
+     */
+    public static LocalizedStringTable of(Collection<LocalizedString> strings) {
+        Builder builder = new Builder(strings.size());
+        for (LocalizedString string : strings) {
+            builder.add(string);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return a builder for a new table
+     */
+    public static Builder builder() {
+        return new Builder(16);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the locales with translations in at least one row
+     */
+    public List<Locale> getLocales() {
+        return Collections.unmodifiableList(Arrays.asList(locales));
+    }
+
+    /**
+     * Returns the string in the given row. A new instance is created on each call, equal to the one added to the table.
+     *
+     * @param row the row
+     * @return the string
+     */
+    public LocalizedString get(int row) {
+        int shape = shapes[checkRow(row)];
+        int[] shapeColumns = this.shapeColumns[shape];
+        String[] values = new String[shapeColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns[shapeColumns[i]][row];
+        }
+        return LocalizedString.wrap(shapeLocales[shape], values);
+    }
+
+    /**
+     * Same as <code>get(row).getContent(locale)</code>.
+     *
+     * @param row the row
+     * @param locale the {@link Locale} to fetch
+     * @return the best possible translation, can be null
+     */
+    public String getContent(int row, Locale locale) {
+        int shape = shapes[checkRow(row)];
+        int index = LocalizedString.indexFor(shapeLocales[shape], locale, null);
+        return index < 0 ? null : columns[shapeColumns[shape][index]][row];
+    }
+
+    /**
+     * Same as <code>get(row).getContent()</code>.
+     *
+     * @param row the row
+     * @return the best possible translation, can be null
+     */
+    public String getContent(int row) {
+        int shape = shapes[checkRow(row)];
+        int column = contentColumn(shape, I18N.getLocale());
+        return column < 0 ? null : columns[column][row];
+    }
+
+    /**
+     * Returns, for every row, what <code>get(row).getContent(locale)</code> would.
+     *
+     * @param locale the {@link Locale} to fetch
+     * @return a new array with the translation of each row
+     */
+    public String[] getContents(Locale locale) {
+        int[] columnOfShape = new int[shapeLocales.length];
+        for (int shape = 0; shape < columnOfShape.length; shape++) {
+            int index = LocalizedString.indexFor(shapeLocales[shape], locale, null);
+            columnOfShape[shape] = index < 0 ? -1 : shapeColumns[shape][index];
+        }
+        return gather(columnOfShape);
+    }
+
+    /**
+     * Returns, for every row, what <code>get(row).getContent()</code> would.
+     *
+     * @return a new array with the translation of each row
+     */
+    public String[] getContents() {
+        Locale current = I18N.getLocale();
+        int[] columnOfShape = new int[shapeLocales.length];
+        for (int shape = 0; shape < columnOfShape.length; shape++) {
+            columnOfShape[shape] = contentColumn(shape, current);
+        }
+        return gather(columnOfShape);
+    }
+
+    /**
+     * @return a view of this table as a list, creating each element when accessed
+     */
+    public List<LocalizedString> asList() {
+        return new AbstractList<LocalizedString>() {
+            @Override
+            public LocalizedString get(int index) {
+                return LocalizedStringTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<LocalizedString> iterator() {
+        return asList().iterator();
+    }
+
+    /**
+     * Column of the translation returned by {@link LocalizedString#getContent()}, for rows with the given shape.
+     */
+    private int contentColumn(int shape, Locale current) {
+        LocaleSet locales = shapeLocales[shape];
+        int index = LocalizedString.indexFor(locales, current, current);
+        if (index < 0) {
+            index = LocalizedString.indexFor(locales, Locale.getDefault(), current);
+        }
+        if (index < 0 && !locales.isEmpty()) {
+            index = 0;
+        }
+        return index < 0 ? -1 : shapeColumns[shape][index];
+    }
+
+    private String[] gather(int[] columnOfShape) {
+        String[] contents = new String[size];
+        if (columnOfShape.length == 1) {
+            // All rows with the same locales, copy a whole column
+            if (columnOfShape[0] >= 0) {
+                System.arraycopy(columns[columnOfShape[0]], 0, contents, 0, size);
+            }
+            return contents;
+        }
+        for (int row = 0; row < size; row++) {
+            int column = columnOfShape[shapes[row]];
+            if (column >= 0) {
+                contents[row] = columns[column][row];
+            }
+        }
+        return contents;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+        }
+        return row;
+    }
+
+    /**
+     * Builds a {@link LocalizedStringTable}, one row at a time.
+     */
+    public static final class Builder {
+        private int size = 0;
+        private int capacity;
+
+        private Locale[] locales = new Locale[0];
+        private String[][] columns = new String[0][];
+
+        /*
+         * Column of each locale, indexed by registry id, -1 if none.
+         */
+        private int[] columnOfId = new int[0];
+
+        private int[] shapes;
+        /*
+         * Locale sets are canonical, so they are looked up by identity rather than by hashing their locales.
+         */
+        private final Map<LocaleSet, Integer> shapeIds = new IdentityHashMap<>();
+        private LocaleSet[] shapeLocales = new LocaleSet[0];
+        private int[][] shapeColumns = new int[0][];
+
+        private Builder(int capacity) {
+            this.capacity = Math.max(capacity, 1);
+            this.shapes = new int[this.capacity];
+        }
+
+        /**
+         * Adds a row with the given string.
+         *
+         * @param string the string to add
+         * @return this builder
+         */
+        public Builder add(LocalizedString string) {
+            Objects.requireNonNull(string);
+            String[] values = string.values();
+            LocaleSet set = string.locales();
+            if (size == capacity) {
+                grow();
+            }
+            Integer shape = shapeIds.get(set);
+            if (shape == null) {
+                shape = addShape(set);
+            }
+            int[] columnsOfShape = shapeColumns[shape];
+            for (int i = 0; i < values.length; i++) {
+                columns[columnsOfShape[i]][size] = values[i];
+            }
+            shapes[size++] = shape;
+            return this;
+        }
+
+        public LocalizedStringTable build() {
+            String[][] trimmed = new String[columns.length][];
+            for (int c = 0; c < columns.length; c++) {
+                trimmed[c] = Arrays.copyOf(columns[c], size);
+            }
+            return new LocalizedStringTable(size, locales.clone(), trimmed, Arrays.copyOf(shapes, size), shapeLocales.clone(),
+                    shapeColumns.clone());
+        }
+
+        private int addShape(LocaleSet set) {
+            int[] columnsOfShape = new int[set.size()];
+            for (int i = 0; i < columnsOfShape.length; i++) {
+                columnsOfShape[i] = column(set.id(i), set.locale(i));
+            }
+            int shape = shapeLocales.length;
+            shapeLocales = Arrays.copyOf(shapeLocales, shape + 1);
+            shapeLocales[shape] = set;
+            shapeColumns = Arrays.copyOf(shapeColumns, shape + 1);
+            shapeColumns[shape] = columnsOfShape;
+            shapeIds.put(set, shape);
+            return shape;
+        }
+
+        private int column(int id, Locale locale) {
+            if (id >= columnOfId.length) {
+                int previous = columnOfId.length;
+                columnOfId = Arrays.copyOf(columnOfId, Math.max(id + 1, LocaleRegistry.size()));
+                Arrays.fill(columnOfId, previous, columnOfId.length, -1);
+            }
+            if (columnOfId[id] < 0) {
+                int column = locales.length;
+                locales = Arrays.copyOf(locales, column + 1);
+                locales[column] = locale;
+                columns = Arrays.copyOf(columns, column + 1);
+                columns[column] = new String[capacity];
+                columnOfId[id] = column;
+            }
+            return columnOfId[id];
+        }
+
+        private void grow() {
+            capacity = capacity + (capacity >> 1) + 1;
+            shapes = Arrays.copyOf(shapes, capacity);
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], capacity);
+            }
+        }
+    }
+}
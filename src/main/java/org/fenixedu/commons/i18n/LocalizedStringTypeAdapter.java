@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * <p>
+ * Gson {@link TypeAdapter} that reads and writes {@link LocalizedString}s in the format of {@link LocalizedString#json()},
+ * streaming directly from/to the underlying reader or writer, without building {@link com.google.gson.JsonObject}s.
+ * </p>
+ *
+ * <p>
+ * Register it with:
+ *
+ * <pre>
+ * <code>
+ * new GsonBuilder().registerTypeAdapterFactory(LocalizedStringTypeAdapter.FACTORY).create();
+ * </code>
+ * </pre>
+ *
+ * </p>
+ */
+public final class LocalizedStringTypeAdapter extends TypeAdapter<LocalizedString> {
+
+    public static final LocalizedStringTypeAdapter INSTANCE = new LocalizedStringTypeAdapter();
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            return type.getRawType() == LocalizedString.class ? (TypeAdapter<T>) INSTANCE : null;
+        }
+    };
+
+    private LocalizedStringTypeAdapter() {
+    }
+
+    @Override
+    public void write(JsonWriter out, LocalizedString value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            value.write(out);
+        }
+    }
+
+    @Override
+    public LocalizedString read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        // As in JsonObject, a repeated key keeps its last value, even if empty, and empty values are ignored only at the end
+        Map<String, String> entries = new LinkedHashMap<>(4);
+        in.beginObject();
+        while (in.hasNext()) {
+            entries.put(in.nextName(), in.nextString());
+        }
+        in.endObject();
+        LocalizedString.Builder builder = new LocalizedString.Builder();
+        for (Entry<String, String> entry : entries.entrySet()) {
+            builder.with(LocaleRegistry.forLanguageTag(entry.getKey()), entry.getValue());
+        }
+        return builder.build();
+    }
+}
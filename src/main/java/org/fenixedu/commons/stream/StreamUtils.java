@@ -1,5 +1,12 @@
 package org.fenixedu.commons.stream;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Spliterators;
 import java.util.function.BiConsumer;
@@ -11,6 +18,8 @@ import java.util.stream.StreamSupport;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Utility methods to provide a bridge between Java 8 Streams and pre-Java 8 libraries.
@@ -76,6 +85,103 @@ public class StreamUtils {
          return result;
      }
 
+    /**
+     * Writes a JSON array with the result of applying the provided writer to each origin object, as the objects are consumed.
+     * Unlike {@link #toJsonArray(BiConsumer, Iterator)}, no tree is built in memory, so heap use does not depend on the
+     * number of objects.
+     * 
+     * The writer must write exactly one JSON value per object, usually an object between {@link JsonWriter#beginObject()} and
+     * {@link JsonWriter#endObject()}. As a {@link BiConsumer} cannot throw {@link IOException}s, it should wrap them in
+     * {@link UncheckedIOException}s, which are unwrapped and rethrown.
+     * 
+     * @param writer the writer to apply to each origin object, writing its JSON value
+     * @param origins the original objects to be written
+     * @param out the destination {@link JsonWriter}
+     * @throws IOException if writing fails
+     */
+    public static <T> void writeJsonArray(final BiConsumer<JsonWriter, T> writer, final Iterator<T> origins,
+            final JsonWriter out) throws IOException {
+        try {
+            out.beginArray();
+            while (origins.hasNext()) {
+                writer.accept(out, origins.next());
+            }
+            out.endArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes a JSON array with the result of applying the provided writer to each origin object, as the stream is consumed.
+     * The destination is flushed but not closed.
+     * 
+     * @param writer the writer to apply to each origin object, writing its JSON value
+     * @param origins the original objects to be written
+     * @param out the destination {@link Writer}, such as the writer of a servlet response
+     * @throws IOException if writing fails
+     * @see #writeJsonArray(BiConsumer, Iterator, JsonWriter)
+     */
+    public static <T> void writeJsonArray(final BiConsumer<JsonWriter, T> writer, final Stream<T> origins, final Writer out)
+            throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        writeJsonArray(writer, origins.iterator(), json);
+        json.flush();
+    }
+
+    /**
+     * Writes a UTF-8 encoded JSON array with the result of applying the provided writer to each origin object, as the stream
+     * is consumed. The destination is flushed but not closed.
+     * 
+     * @param writer the writer to apply to each origin object, writing its JSON value
+     * @param origins the original objects to be written
+     * @param out the destination {@link OutputStream}, such as the output stream of a servlet response
+     * @throws IOException if writing fails
+     * @see #writeJsonArray(BiConsumer, Iterator, JsonWriter)
+     */
+    public static <T> void writeJsonArray(final BiConsumer<JsonWriter, T> writer, final Stream<T> origins,
+            final OutputStream out) throws IOException {
+        writeJsonArray(writer, origins, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes a JSON array with each origin object written by the provided {@link TypeAdapter}, as the stream is consumed. The
+     * destination is flushed but not closed.
+     * 
+     * @param adapter the adapter writing each origin object
+     * @param origins the original objects to be written
+     * @param out the destination {@link Writer}, such as the writer of a servlet response
+     * @throws IOException if writing fails
+     */
+    public static <T> void writeJsonArray(final TypeAdapter<T> adapter, final Stream<T> origins, final Writer out)
+            throws IOException {
+        writeJsonArray(adapterWriter(adapter), origins, out);
+    }
+
+    /**
+     * Writes a UTF-8 encoded JSON array with each origin object written by the provided {@link TypeAdapter}, as the stream is
+     * consumed. The destination is flushed but not closed.
+     * 
+     * @param adapter the adapter writing each origin object
+     * @param origins the original objects to be written
+     * @param out the destination {@link OutputStream}, such as the output stream of a servlet response
+     * @throws IOException if writing fails
+     */
+    public static <T> void writeJsonArray(final TypeAdapter<T> adapter, final Stream<T> origins, final OutputStream out)
+            throws IOException {
+        writeJsonArray(adapterWriter(adapter), origins, out);
+    }
+
+    private static <T> BiConsumer<JsonWriter, T> adapterWriter(final TypeAdapter<T> adapter) {
+        return (writer, origin) -> {
+            try {
+                adapter.write(writer, origin);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
     /**
      * Returns a {@link Collector} that accumulates all the given {@link JsonElement}s into a new {@link JsonArray}.
      * 
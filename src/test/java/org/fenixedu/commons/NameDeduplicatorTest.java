@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.fenixedu.commons.NameDeduplicator.Cluster;
+import org.junit.Test;
+
+public class NameDeduplicatorTest {
+
+    @Test
+    public void testPhoneticCode() {
+        assertEquals("s41", NameDeduplicator.phoneticCode("silva"));
+        assertEquals("s41", NameDeduplicator.phoneticCode("sylva"));
+        assertEquals("e45", NameDeduplicator.phoneticCode("helena"));
+        assertEquals("e45", NameDeduplicator.phoneticCode("elena"));
+        assertEquals("g524", NameDeduplicator.phoneticCode("goncalves"));
+        assertEquals("a", NameDeduplicator.phoneticCode("a"));
+    }
+
+    @Test
+    public void testFindDuplicates() {
+        List<String> names = Arrays.asList("João Silva", "Maria Santos", "Joao Silva", "Silva, João", "Pedro Costa",
+                "Helena Gonçalves", "Elena Goncalves", "Maria Santos Costa", "João Sliva");
+        List<Cluster<String>> clusters = new NameDeduplicator<String>(name -> name, 0.4).findDuplicates(names);
+
+        assertEquals(2, clusters.size());
+        assertTrue(clusters.get(0).getScore() >= clusters.get(1).getScore());
+        assertTrue(clusters.get(1).getScore() >= 0.4);
+        Set<List<String>> values = new HashSet<>();
+        for (Cluster<String> cluster : clusters) {
+            values.add(cluster.getValues());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(Arrays.asList("João Silva", "Joao Silva", "Silva, João", "João Sliva"),
+                Arrays.asList("Helena Gonçalves", "Elena Goncalves"))), values);
+    }
+
+    @Test
+    public void testBlocksBySetOfWords() {
+        // Repeated words change the phonetic keys, so only the set of words puts these names in the same block
+        List<String> names = Arrays.asList("Ana Maria Ana", "Maria Ana");
+        List<Cluster<String>> clusters = new NameDeduplicator<String>(name -> name, 0.5).findDuplicates(names);
+
+        assertEquals(1, clusters.size());
+        assertEquals(names, clusters.get(0).getValues());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMinScore() {
+        new NameDeduplicator<String>(name -> name, 1.5);
+    }
+
+    @Test
+    public void testFindsCopiesInLargeBlocks() {
+        String[] first = { "Ana", "João", "Maria", "Rui" };
+        String[] last = { "Silva", "Santos", "Costa" };
+        Random random = new Random(9);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            names.add(first[random.nextInt(first.length)] + " " + Integer.toString(i, 36) + " "
+                    + last[random.nextInt(last.length)]);
+        }
+        // Copies with reordered words and without accents, far apart in the input
+        Set<Set<String>> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i += 500) {
+            String name = names.get(i);
+            String copy = StringNormalizer.normalizeAndRemoveAccents(name.substring(name.lastIndexOf(' ') + 1) + " "
+                    + name.substring(0, name.lastIndexOf(' ')));
+            names.add(copy);
+            expected.add(new HashSet<>(Arrays.asList(name, copy)));
+        }
+
+        Set<Set<String>> found = new HashSet<>();
+        for (Cluster<String> cluster : new NameDeduplicator<String>(name -> name, 0.9).findDuplicates(names)) {
+            found.add(new HashSet<>(cluster.getValues()));
+            assertEquals(1.0, cluster.getScore(), 0);
+        }
+        assertEquals(expected, found);
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SlugRegistryTest {
+
+    @Test
+    public void testAssign() {
+        SlugRegistry registry = new SlugRegistry();
+        assertEquals("engenharia-fisica", registry.assign("Engenharia Física"));
+        assertEquals("engenharia-fisica-2", registry.assign("Engenharia Fisica"));
+        assertEquals("engenharia-fisica-3", registry.assign(" engenharia física "));
+        assertEquals("matematica", registry.assign("Matemática"));
+        assertEquals(4, registry.size());
+        assertTrue(registry.contains("engenharia-fisica-2"));
+        assertFalse(registry.contains("engenharia-fisica-4"));
+    }
+
+    @Test
+    public void testNeverAssignsReservedSlugs() {
+        SlugRegistry registry = new SlugRegistry(Arrays.asList("fisica", "fisica-3", "quimica-2", "quimica-02"));
+        assertFalse(registry.reserve("fisica"));
+        assertTrue(registry.reserve("matematica-2"));
+
+        assertEquals("fisica-4", registry.assign("Física"));
+        assertEquals("quimica", registry.assign("Química"));
+        assertEquals("quimica-3", registry.assign("Química"));
+        assertEquals("matematica", registry.assign("Matemática"));
+        assertEquals("matematica-3", registry.assign("Matemática"));
+
+        // The slug of a name can itself look like a suffixed slug
+        assertEquals("matematica-4", registry.assign("Matemática 4"));
+        assertEquals("matematica-5", registry.assign("Matemática"));
+
+        assertEquals(new HashSet<>(Arrays.asList("fisica", "fisica-3", "fisica-4", "quimica", "quimica-2", "quimica-02",
+                "quimica-3", "matematica", "matematica-2", "matematica-3", "matematica-4", "matematica-5")), registry.getSlugs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameWithoutSlug() {
+        new SlugRegistry().assign(" ?! ");
+    }
+
+    @Test
+    public void testConcurrentAssign() throws Exception {
+        SlugRegistry registry = new SlugRegistry(Arrays.asList("curso-5"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    List<String> assigned = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        assigned.add(registry.assign(i % 2 == 0 ? "Curso" : "Curso " + i));
+                    }
+                    return assigned;
+                }));
+            }
+            Set<String> unique = new HashSet<>();
+            for (Future<List<String>> future : futures) {
+                for (String slug : future.get()) {
+                    assertTrue(slug, unique.add(slug));
+                }
+            }
+            assertEquals(8000, unique.size());
+            assertEquals(8001, registry.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
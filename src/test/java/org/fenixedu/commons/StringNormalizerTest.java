@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class StringNormalizerTest {
+
+    /*
+     * The original implementations, to which the optimized ones must remain identical.
+     */
+    private static final Pattern NONLATIN = Pattern.compile("[^\\w-]");
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s]");
+
+    private static String referenceNormalizeAndRemoveAccents(String text) {
+        return Normalizer.normalize(text, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+    }
+
+    private static String referenceNormalizePreservingCapitalizedLetters(String string) {
+        return Normalizer.normalize(string, Form.NFD).replaceAll("[^\\p{ASCII}]", "");
+    }
+
+    private static String referenceNormalize(String string) {
+        return referenceNormalizePreservingCapitalizedLetters(string).toLowerCase();
+    }
+
+    private static String referenceSlugify(String name) {
+        String result = referenceNormalizePreservingCapitalizedLetters(referenceNormalizeAndRemoveAccents(name.trim()));
+        result = WHITESPACE.matcher(result).replaceAll("-");
+        result = NONLATIN.matcher(result).replaceAll("");
+        return result.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final String ALPHABET = "aZz09_- \t\n\u000B\f\r\u0001\u007F!.,/:@[`{~" + "áÁçÇãõéêíóúüñßøÆ \u0085 ﬁ"
+            + "̧́日本😀\uFFFE\uFFFF";
+
+    private static String random(Random random, int length, boolean ascii) {
+        StringBuilder builder = new StringBuilder(length);
+        int bound = ascii ? ALPHABET.indexOf('á') : ALPHABET.length();
+        for (int i = 0; i < length; i++) {
+            builder.append(random.nextInt(8) == 0 ? (char) random.nextInt(ascii ? 0x80 : 0x10000) : ALPHABET.charAt(random
+                    .nextInt(bound)));
+        }
+        return builder.toString();
+    }
+
+    private static void assertSameAsReference(String text) {
+        assertEquals(text, referenceNormalizeAndRemoveAccents(text), StringNormalizer.normalizeAndRemoveAccents(text));
+        assertEquals(text, referenceNormalizePreservingCapitalizedLetters(text),
+                StringNormalizer.normalizePreservingCapitalizedLetters(text));
+        assertEquals(text, referenceNormalize(text), StringNormalizer.normalize(text));
+        assertEquals(text, referenceSlugify(text), StringNormalizer.slugify(text));
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("Joao Conceicao", StringNormalizer.normalizeAndRemoveAccents("João Conceição"));
+        assertEquals("joao conceicao", StringNormalizer.normalize("João Conceição"));
+        assertEquals("JOAO", StringNormalizer.normalizePreservingCapitalizedLetters("JOÃO"));
+        assertEquals("ist123456", StringNormalizer.normalize("IST123456"));
+    }
+
+    @Test
+    public void testSlugify() {
+        assertEquals("engenharia-informatica-e-de-computadores",
+                StringNormalizer.slugify(" Engenharia Informática e de Computadores "));
+        assertEquals("leic-a_2014", StringNormalizer.slugify("LEIC-A_2014"));
+        assertEquals("c-programming", StringNormalizer.slugify("C++ Programming"));
+        assertEquals("", StringNormalizer.slugify("  "));
+    }
+
+    @Test
+    public void testAsciiFastPath() {
+        String username = "ist123456";
+        assertSame(username, StringNormalizer.normalizeAndRemoveAccents(username));
+        assertSame(username, StringNormalizer.normalizePreservingCapitalizedLetters(username));
+        assertSame(username, StringNormalizer.normalize(username));
+        assertSame(username, StringNormalizer.slugify(username));
+
+        assertTrue(StringNormalizer.isAscii(""));
+        assertTrue(StringNormalizer.isAscii("abcd\u007F"));
+        assertFalse(StringNormalizer.isAscii("abcdefgh\u0080"));
+        assertFalse(StringNormalizer.isAscii("é"));
+    }
+
+    @Test
+    public void testFoldToAscii() {
+        assertEquals("Strasse", StringNormalizer.foldToAscii("Straße"));
+        assertEquals("AEroskobing", StringNormalizer.foldToAscii("Ærøskøbing"));
+        assertEquals("Lodz", StringNormalizer.foldToAscii("Łódź"));
+        assertEquals("oeuvre fine", StringNormalizer.foldToAscii("œuvre ﬁne"));
+        assertEquals("Joao", StringNormalizer.foldToAscii("João"));
+        assertEquals("Joao ", StringNormalizer.foldToAscii("Joa\u0303o 日本"));
+        String ascii = "Joao";
+        assertSame(ascii, StringNormalizer.foldToAscii(ascii));
+    }
+
+    @Test
+    public void testSameAsReferenceForLatinChars() {
+        for (char c = 0; c < 0x0250; c++) {
+            assertSameAsReference("a" + c + "B");
+        }
+    }
+
+    /*
+     * Returns the text in chunks of random sizes, to split it at every possible place.
+     */
+    private static Reader chunked(String text, Random random) {
+        return new StringReader(text) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1 + random.nextInt(5)));
+            }
+        };
+    }
+
+    private static void assertStreamingSameAsString(String text, Random random) throws IOException {
+        StringBuilder builder = new StringBuilder("prefix");
+        assertEquals("prefix" + StringNormalizer.normalizeAndRemoveAccents(text),
+                StringNormalizer.normalizeAndRemoveAccents(text, builder).toString());
+        assertEquals(StringNormalizer.normalizePreservingCapitalizedLetters(text), StringNormalizer
+                .normalizePreservingCapitalizedLetters(CharBuffer.wrap(text.toCharArray()), new StringBuilder()).toString());
+        assertEquals(StringNormalizer.normalize(text), StringNormalizer.normalize(text, new StringWriter()).toString());
+        assertEquals(StringNormalizer.slugify(text), StringNormalizer.slugify(text, new StringBuilder()).toString());
+        assertEquals(StringNormalizer.slugify(text), StringNormalizer.slugify(text, new StringWriter()).toString());
+        assertEquals(StringNormalizer.foldToAscii(text), StringNormalizer.foldToAscii(text, new StringBuilder()).toString());
+
+        StringWriter writer = new StringWriter();
+        StringNormalizer.normalizeAndRemoveAccents(chunked(text, random), writer);
+        assertEquals(StringNormalizer.normalizeAndRemoveAccents(text), writer.toString());
+        writer = new StringWriter();
+        StringNormalizer.normalizePreservingCapitalizedLetters(chunked(text, random), writer);
+        assertEquals(StringNormalizer.normalizePreservingCapitalizedLetters(text), writer.toString());
+        writer = new StringWriter();
+        StringNormalizer.normalize(chunked(text, random), writer);
+        assertEquals(StringNormalizer.normalize(text), writer.toString());
+        writer = new StringWriter();
+        StringNormalizer.foldToAscii(chunked(text, random), writer);
+        assertEquals(StringNormalizer.foldToAscii(text), writer.toString());
+    }
+
+    @Test
+    public void testStreaming() throws IOException {
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            assertStreamingSameAsString(random(random, random.nextInt(40), i % 4 == 0), random);
+        }
+        // Longer than the internal buffer, with and without places to split it
+        StringBuilder latin = new StringBuilder();
+        StringBuilder japanese = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            latin.append("Conceição ");
+            japanese.append("日本\u0301");
+        }
+        assertStreamingSameAsString(latin.toString(), random);
+        assertStreamingSameAsString(japanese.toString(), random);
+    }
+
+    /*
+     * Returns the given number of copies of the text, generated as they are read, failing if asked to read into more than
+     * the given number of chars.
+     */
+    private static Reader repeated(String text, int copies, int maxBuffer) {
+        return new Reader() {
+            private final long length = (long) text.length() * copies;
+            private long position = 0;
+
+            @Override
+            public int read(char[] buffer, int offset, int count) {
+                assertTrue("Read into a buffer of " + (offset + count) + " chars", offset + count <= maxBuffer);
+                if (position == length) {
+                    return -1;
+                }
+                int read = (int) Math.min(count, length - position);
+                for (int i = 0; i < read; i++) {
+                    buffer[offset + i] = text.charAt((int) ((position + i) % text.length()));
+                }
+                position += read;
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /*
+     * Checks that everything written is made of copies of the expected text, returning the number of chars written.
+     */
+    private static final class RepeatedWriter extends Writer {
+        private final String expected;
+        private long written = 0;
+
+        private RepeatedWriter(String expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected.charAt((int) (written++ % expected.length())), buffer[offset + i]);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testStreamingNonLatinText() throws IOException {
+        // No char below Latin Extended-B, with combining marks and surrogate pairs
+        String text = "日本語\u3000Ελληνικά\u3000Русский\u3000العربية\u3000😀\u0301";
+        int copies = 100000;
+        for (boolean ascii : new boolean[] { false, true }) {
+            String expected = ascii ? StringNormalizer.foldToAscii(text) : StringNormalizer.normalizeAndRemoveAccents(text);
+            RepeatedWriter writer = new RepeatedWriter(expected);
+            if (ascii) {
+                StringNormalizer.foldToAscii(repeated(text, copies, 16384), writer);
+            } else {
+                StringNormalizer.normalizeAndRemoveAccents(repeated(text, copies, 16384), writer);
+            }
+            assertEquals((long) expected.length() * copies, writer.written);
+        }
+    }
+
+    @Test
+    public void testSortKey() {
+        Locale ptPT = Locale.forLanguageTag("pt-PT");
+        assertEquals(0, StringNormalizer.compareSortKeys(StringNormalizer.sortKey("João", ptPT),
+                StringNormalizer.sortKey("JOAO", ptPT)));
+        assertTrue(StringNormalizer.compareSortKeys(StringNormalizer.sortKey("Álvaro", ptPT),
+                StringNormalizer.sortKey("Bruno", ptPT)) < 0);
+        assertTrue(StringNormalizer.compareSortKeys(StringNormalizer.sortKey("Ana", ptPT),
+                StringNormalizer.sortKey("Ana Maria", ptPT)) < 0);
+
+        // Same order as collating the strings without accents
+        Collator collator = Collator.getInstance(ptPT);
+        collator.setStrength(Collator.PRIMARY);
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            // The collation keys of the JDK disagree with Collator.compare for the noncharacters U+FFFE and U+FFFF
+            String one = random(random, random.nextInt(8), i % 2 == 0).replaceAll("[\uFFFE\uFFFF]", "");
+            String other = random(random, random.nextInt(8), i % 3 == 0).replaceAll("[\uFFFE\uFFFF]", "");
+            assertEquals(one + " " + other, Integer.signum(collator.compare(StringNormalizer.normalizeAndRemoveAccents(one),
+                    StringNormalizer.normalizeAndRemoveAccents(other))), Integer.signum(StringNormalizer.compareSortKeys(
+                    StringNormalizer.sortKey(one, ptPT), StringNormalizer.sortKey(other, ptPT))));
+        }
+    }
+
+    @Test
+    public void testSortByKey() {
+        List<String[]> people = new ArrayList<>();
+        for (String name : Arrays.asList("Óscar", "ana", "Zé", "Ana", "Érica", "Bruno", "Ângela")) {
+            people.add(new String[] { name });
+        }
+        StringNormalizer.sort(people, person -> person[0], Locale.forLanguageTag("pt-PT"));
+        List<String> names = new ArrayList<>();
+        for (String[] person : people) {
+            names.add(person[0]);
+        }
+        // Stable for equal keys
+        assertEquals(Arrays.asList("ana", "Ana", "Ângela", "Bruno", "Érica", "Óscar", "Zé"), names);
+    }
+
+    @Test
+    public void testSameAsReference() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            assertSameAsReference(random(random, random.nextInt(24), i % 2 == 0));
+        }
+    }
+
+    @Test
+    public void testSameAsReferenceWithTurkishLocale() throws IOException {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            Random random = new Random(7);
+            assertSameAsReference("ISTANBUL Iİıi");
+            assertStreamingSameAsString("ISTANBUL Iİıi", random);
+            for (int i = 0; i < 2000; i++) {
+                assertSameAsReference(random(random, random.nextInt(24), i % 2 == 0));
+            }
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TrigramIndexTest {
+
+    @Test
+    public void testTrigrams() {
+        assertEquals(4, TrigramIndex.trigrams("Ana").length);
+        assertEquals(4, TrigramIndex.trigrams(" ANA, ana ").length);
+        assertEquals(8, TrigramIndex.trigrams("Ana Rui").length);
+        assertEquals(0, TrigramIndex.trigrams(" - ").length);
+    }
+
+    @Test
+    public void testSearch() {
+        TrigramIndex<String> index = TrigramIndex.of(Arrays.asList("João Silva", "Joana Silva", "João Santos", "Maria Silva",
+                "Rui Conceição"));
+
+        assertEquals(5, index.size());
+        assertEquals("João Silva", index.search("joao silva", 10).get(0));
+        assertEquals("João Silva", index.search("Joao Slva", 10).get(0));
+        assertEquals(Arrays.asList("Rui Conceição"), index.search("conceicao", 10));
+        assertEquals(Arrays.asList("Rui Conceição"), index.search("rui concieção", 10));
+        assertEquals(Collections.emptyList(), index.search("Pedro Costa", 10));
+        assertEquals(Collections.emptyList(), index.search("joao", 0));
+        assertEquals(Collections.emptyList(), index.search("?", 10));
+
+        List<String> silvas = index.search("silva", 10, 0.1);
+        assertEquals(3, silvas.size());
+        assertEquals(Arrays.asList("João Silva"), index.search("silva", 1, 0.1));
+    }
+
+    @Test
+    public void testRemove() {
+        TrigramIndex<String> index = TrigramIndex.of(Arrays.asList("João Silva", "Joana Silva"));
+        assertTrue(index.remove("João Silva"));
+        assertEquals(Arrays.asList("Joana Silva"), index.search("joao silva", 10, 0.1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMinScore() {
+        TrigramIndex.of(Arrays.asList("João")).search("joao", 10, 0);
+    }
+
+    private static double score(int[] a, int[] b) {
+        int shared = 0;
+        for (int trigram : a) {
+            if (Arrays.binarySearch(b, trigram) >= 0) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    @Test
+    public void testSameAsExhaustiveSearch() {
+        String[] first = { "Ana", "João", "Maria", "Rui", "Pedro", "Inês", "José", "Marta" };
+        String[] last = { "Silva", "Santos", "Ferreira", "Pereira", "Costa", "Conceição", "Gonçalves", "Sousa" };
+        Random random = new Random(3);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            names.add(first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)] + " "
+                    + last[random.nextInt(last.length)]);
+        }
+        TrigramIndex<String> index = TrigramIndex.of(names);
+        for (String query : Arrays.asList("ana silva", "joao consseicao", "pereira", "Marta Sousa Costa", "ines gonc")) {
+            for (double minScore : new double[] { 0.1, 0.3, 0.6 }) {
+                int[] trigrams = TrigramIndex.trigrams(query);
+                List<Integer> expected = new ArrayList<>();
+                for (int id = 0; id < names.size(); id++) {
+                    if (score(trigrams, TrigramIndex.trigrams(names.get(id))) >= minScore) {
+                        expected.add(id);
+                    }
+                }
+                expected.sort((a, b) -> {
+                    int result = Double.compare(score(trigrams, TrigramIndex.trigrams(names.get(b))),
+                            score(trigrams, TrigramIndex.trigrams(names.get(a))));
+                    return result != 0 ? result : Integer.compare(a, b);
+                });
+                List<String> expectedNames = new ArrayList<>();
+                for (int id : expected.subList(0, Math.min(20, expected.size()))) {
+                    expectedNames.add(names.get(id));
+                }
+                assertEquals(query + " " + minScore, expectedNames, index.search(query, 20, minScore));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchWhileAdding() throws Exception {
+        TrigramIndex<String> index = new TrigramIndex<>(name -> name);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> searches = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                searches.add(executor.submit(() -> {
+                    while (index.size() < 20000) {
+                        int size = index.size();
+                        List<String> results = index.search("person 1234", 5, 0.1);
+                        if (size > 1234) {
+                            assertEquals("Person 1234", results.get(0));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 20000; i++) {
+                index.add("Person " + i);
+            }
+            for (Future<?> search : searches) {
+                search.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
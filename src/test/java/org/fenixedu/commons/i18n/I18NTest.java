@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class I18NTest {
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+
+    @After
+    public void resetLocale() {
+        I18N.setLocale(null);
+    }
+
+    @Test
+    public void testWithLocale() throws Exception {
+        I18N.setLocale(enGB);
+        assertEquals(ptPT, I18N.withLocale(ptPT, () -> I18N.getLocale()));
+        assertEquals(enGB, I18N.getLocale());
+
+        AtomicReference<Locale> seen = new AtomicReference<>();
+        I18N.withLocale(null, () -> seen.set(I18N.getLocale()));
+        assertEquals(Locale.getDefault(), seen.get());
+        assertEquals(enGB, I18N.getLocale());
+    }
+
+    @Test
+    public void testWithLocaleRestoresOnFailure() {
+        I18N.setLocale(enGB);
+        try {
+            I18N.withLocale(ptPT, (Runnable) () -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException e) {
+            assertEquals(enGB, I18N.getLocale());
+            return;
+        }
+        throw new AssertionError("Expected exception");
+    }
+
+    @Test
+    public void testWrappedExecutor() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            ExecutorService executor = I18N.wrap(pool);
+            I18N.setLocale(ptPT);
+            Future<Locale> portuguese = executor.submit(() -> I18N.getLocale());
+            I18N.setLocale(enGB);
+            Future<Locale> english = executor.submit(() -> I18N.getLocale());
+            assertEquals(ptPT, portuguese.get());
+            assertEquals(enGB, english.get());
+
+            List<Callable<Locale>> tasks = Arrays.asList(() -> I18N.getLocale(), () -> I18N.getLocale());
+            for (Future<Locale> future : I18N.withLocale(ptPT, () -> executor.invokeAll(tasks))) {
+                assertEquals(ptPT, future.get());
+            }
+
+            // The pooled thread does not keep the locale of previous tasks
+            I18N.setLocale(null);
+            assertEquals(Locale.getDefault(), pool.submit(() -> I18N.getLocale()).get());
+
+            AtomicReference<Locale> seen = new AtomicReference<>();
+            Executor plain = I18N.wrap((Executor) pool);
+            I18N.setLocale(ptPT);
+            CompletableFuture.runAsync(() -> seen.set(I18N.getLocale()), plain).get();
+            assertEquals(ptPT, seen.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompletableFuture() throws Exception {
+        I18N.setLocale(ptPT);
+        CompletableFuture<Locale> future = I18N.supplyAsync(() -> I18N.getLocale());
+        I18N.setLocale(enGB);
+        assertEquals(ptPT, future.get());
+
+        AtomicReference<Locale> seen = new AtomicReference<>();
+        I18N.runAsync(() -> seen.set(I18N.getLocale())).get();
+        assertSame(enGB, seen.get());
+    }
+}
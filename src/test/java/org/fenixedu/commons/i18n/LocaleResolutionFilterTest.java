@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LocaleResolutionFilterTest {
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+    private static final Locale esES = Locale.forLanguageTag("es-ES");
+
+    private final LocaleResolutionFilter filter = new LocaleResolutionFilter(Arrays.asList(ptPT, enGB), null, 16);
+
+    @After
+    public void resetLocale() {
+        I18N.setLocale(null);
+    }
+
+    @Test
+    public void testNegotiation() {
+        assertEquals(ptPT, filter.resolve((String) null));
+        assertEquals(ptPT, filter.resolve(""));
+        assertEquals(enGB, filter.resolve("en-GB"));
+        assertEquals(enGB, filter.resolve("en-US,en;q=0.9"));
+        assertEquals(enGB, filter.resolve("EN"));
+        assertEquals(enGB, filter.resolve("fr-FR, en-GB;q=0.8, pt;q=0.5"));
+        assertEquals(ptPT, filter.resolve("en;q=0.2, pt-BR;q=0.7"));
+        assertEquals(ptPT, filter.resolve("pt-PT-x-custom"));
+        assertEquals(ptPT, filter.resolve("fr, de"));
+        assertEquals(ptPT, filter.resolve("*"));
+        assertEquals(ptPT, filter.resolve("en;q=0, fr"));
+        assertEquals(ptPT, filter.resolve("not a ; valid = header"));
+    }
+
+    @Test
+    public void testBoundedCache() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(enGB, filter.resolve("en;q=0." + (i % 9 + 1) + ", x-" + i));
+        }
+        // Cached values are still returned, not cached ones still negotiated
+        assertEquals(enGB, filter.resolve("en;q=0.1, x-1"));
+        assertEquals(ptPT, filter.resolve("pt, x-99"));
+    }
+
+    @Test
+    public void testInitParameters() throws ServletException {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("supportedLocales", "en-GB, es-ES");
+        parameters.put("defaultLocale", "es-ES");
+        LocaleResolutionFilter configured = new LocaleResolutionFilter();
+        configured.init(config(parameters));
+        assertEquals(enGB, configured.resolve("en"));
+        assertEquals(esES, configured.resolve("fr"));
+    }
+
+    @Test(expected = ServletException.class)
+    public void testMissingSupportedLocales() throws ServletException {
+        new LocaleResolutionFilter().init(config(new HashMap<>()));
+    }
+
+    @Test
+    public void testDoFilter() throws Exception {
+        AtomicReference<Locale> seen = new AtomicReference<>();
+        I18N.setLocale(esES);
+        filter.doFilter(request("en-US", null), null, (request, response) -> seen.set(I18N.getLocale()));
+        assertEquals(enGB, seen.get());
+        assertEquals(esES, I18N.getLocale());
+
+        I18N.setLocale(null);
+        HttpSession session = session();
+        I18N.setLocale(session, esES);
+        I18N.setLocale(null);
+        filter.doFilter(request("en-US", session), null, (request, response) -> seen.set(I18N.getLocale()));
+        assertEquals(esES, seen.get());
+        assertNull(I18N.getThreadLocale());
+    }
+
+    private static FilterConfig config(Map<String, String> parameters) {
+        return (FilterConfig) Proxy.newProxyInstance(FilterConfig.class.getClassLoader(), new Class<?>[] { FilterConfig.class },
+                (proxy, method, args) -> method.getName().equals("getInitParameter") ? parameters.get(args[0]) : null);
+    }
+
+    private static HttpServletRequest request(String acceptLanguage, HttpSession session) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getHeader":
+                        return "Accept-Language".equalsIgnoreCase((String) args[0]) ? acceptLanguage : null;
+                    case "getSession":
+                        return session;
+                    default:
+                        return null;
+                    }
+                });
+    }
+
+    private static HttpSession session() {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(), new Class<?>[] { HttpSession.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getAttribute":
+                        return attributes.get(args[0]);
+                    case "setAttribute":
+                        attributes.put((String) args[0], args[1]);
+                        return null;
+                    default:
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.fenixedu.commons.StringNormalizer;
+import org.junit.Test;
+
+public class LocalizedStringIndexTest {
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+    private static final Locale esES = Locale.forLanguageTag("es-ES");
+
+    private static LocalizedString name(String pt, String en) {
+        return new LocalizedString.Builder().with(ptPT, pt).with(enGB, en).build();
+    }
+
+    @Test
+    public void testSearch() {
+        LocalizedString informatics = name("Engenharia Informática e de Computadores", "Computer Science and Engineering");
+        LocalizedString mechanics = name("Engenharia Mecânica", "Mechanical Engineering");
+        LocalizedString physics = name("Física", "Physics");
+        LocalizedStringIndex<LocalizedString> index = LocalizedStringIndex.of(Arrays.asList(informatics, mechanics, physics));
+
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList(informatics), index.search("eng inf", 10));
+        assertEquals(Arrays.asList(informatics), index.search("ENGENHARIA informatica", 10));
+        assertEquals(Arrays.asList(informatics), index.search("comp sci", 10));
+        assertEquals(Arrays.asList(physics), index.search("fís", 10));
+        assertEquals(Arrays.asList(mechanics, informatics), index.search("eng", 10));
+        assertEquals(Arrays.asList(mechanics), index.search("eng", 1));
+        assertEquals(Collections.emptyList(), index.search("quimica", 10));
+        assertEquals(Collections.emptyList(), index.search(" - ", 10));
+        assertEquals(Collections.emptyList(), index.search("eng", 0));
+    }
+
+    @Test
+    public void testSearchByLocale() {
+        LocalizedString informatics = name("Engenharia Informática", "Computer Science and Engineering");
+        LocalizedString spanish = new LocalizedString(esES, "Ingeniería Informática");
+        LocalizedStringIndex<LocalizedString> index = LocalizedStringIndex.of(Arrays.asList(informatics, spanish));
+
+        assertEquals(Arrays.asList(informatics), index.search("computer", enGB, 10));
+        assertEquals(Collections.emptyList(), index.search("computer", ptPT, 10));
+        assertEquals(Arrays.asList(informatics, spanish), index.search("informatica", 10));
+        assertEquals(Arrays.asList(spanish), index.search("informatica", esES, 10));
+        assertEquals(Collections.emptyList(), index.search("informatica", Locale.forLanguageTag("fr-FR"), 10));
+    }
+
+    @Test
+    public void testRanking() {
+        LocalizedString first = new LocalizedString(ptPT, "Introdução à Programação");
+        LocalizedString second = new LocalizedString(ptPT, "Programação");
+        LocalizedString third = new LocalizedString(ptPT, "Programação Avançada");
+        LocalizedString fourth = new LocalizedString(ptPT, "Programação com Objectos");
+        LocalizedStringIndex<LocalizedString> index =
+                LocalizedStringIndex.of(Arrays.asList(first, second, third, fourth));
+
+        // Starting with the query, then fewer tokens, then insertion order
+        assertEquals(Arrays.asList(second, third, fourth, first), index.search("prog", 10));
+        assertEquals(Arrays.asList(third, first), index.search("a prog", 10));
+        assertEquals(Arrays.asList(first), index.search("intro prog", 10));
+    }
+
+    @Test
+    public void testUpdates() {
+        LocalizedStringIndex<String> index = new LocalizedStringIndex<>(code -> new LocalizedString(enGB, "Course " + code));
+        index.add("alpha");
+        index.add("beta");
+        assertEquals(Arrays.asList("alpha"), index.search("course alp", 10));
+        assertEquals(Arrays.asList("alpha", "beta"), index.search("course", 10));
+
+        assertTrue(index.remove("alpha"));
+        assertFalse(index.remove("alpha"));
+        assertEquals(Arrays.asList("beta"), index.search("course", 10));
+        assertEquals(1, index.size());
+
+        index.add("beta");
+        assertEquals(Arrays.asList("beta"), index.search("course", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchLinearScan() {
+        Random random = new Random(7);
+        String[] words = { "Análise", "Matemática", "Sistemas", "Distribuídos", "Gestão", "Projecto", "Álgebra", "Linear",
+                "Redes", "Computadores", "Arquitectura", "Bases", "Dados" };
+        LocalizedStringIndex<LocalizedString> index = new LocalizedStringIndex<>(string -> string);
+        List<LocalizedString> live = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            if (!live.isEmpty() && random.nextInt(4) == 0) {
+                LocalizedString removed = live.remove(random.nextInt(live.size()));
+                assertTrue(index.remove(removed));
+            } else {
+                LocalizedString string = new LocalizedString(ptPT, words[random.nextInt(words.length)] + " "
+                        + words[random.nextInt(words.length)] + " " + i);
+                live.add(string);
+                index.add(string);
+            }
+            if (i % 100 == 0) {
+                String query = words[random.nextInt(words.length)].substring(0, 3) + " " + (i % 7);
+                List<LocalizedString> results = index.search(query, Integer.MAX_VALUE);
+                assertEquals(linearScan(live, query), results);
+            }
+        }
+        assertEquals(live.size(), index.size());
+    }
+
+    private static List<LocalizedString> linearScan(List<LocalizedString> strings, String query) {
+        String[] tokens = StringNormalizer.normalize(query).split("[^a-z0-9]+");
+        List<LocalizedString> starting = new ArrayList<>();
+        List<LocalizedString> others = new ArrayList<>();
+        for (LocalizedString string : strings) {
+            String[] words = StringNormalizer.normalize(string.getContent(ptPT)).split("[^a-z0-9]+");
+            if (Arrays.stream(tokens).allMatch(token -> Arrays.stream(words).anyMatch(word -> word.startsWith(token)))) {
+                (words[0].startsWith(tokens[0]) ? starting : others).add(string);
+            }
+        }
+        // All strings have three tokens, so insertion order decides
+        starting.addAll(others);
+        return starting;
+    }
+}
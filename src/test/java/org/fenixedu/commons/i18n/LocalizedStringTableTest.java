@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2013, Instituto Superior Técnico. All rights reserved.
+ *
+ * This file is part of fenixedu-commons.
+ *
+ * fenixedu-commons is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * fenixedu-commons is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with fenixedu-commons. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fenixedu.commons.i18n;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class LocalizedStringTableTest {
+    private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
+    private static final Locale enGB = Locale.forLanguageTag("en-GB");
+    private static final Locale esES = Locale.forLanguageTag("es-ES");
+
+    @After
+    public void resetLocale() {
+        I18N.setLocale(null);
+    }
+
+    @Test
+    public void testTable() {
+        LocalizedString both = new LocalizedString.Builder().with(ptPT, "Física").with(enGB, "Physics").build();
+        LocalizedString portuguese = new LocalizedString(ptPT, "Química");
+        LocalizedString spanish = new LocalizedString(esES, "Matemáticas");
+        LocalizedString empty = new LocalizedString();
+        LocalizedStringTable table = LocalizedStringTable.of(Arrays.asList(both, portuguese, spanish, empty));
+
+        assertEquals(4, table.size());
+        assertEquals(Arrays.asList(ptPT, enGB, esES), table.getLocales());
+        assertEquals(Arrays.asList(both, portuguese, spanish, empty), table.asList());
+        assertEquals(both, table.get(0));
+        assertEquals("Physics", table.getContent(0, enGB));
+        assertNull(table.getContent(1, enGB));
+        assertNull(table.getContent(3, enGB));
+        assertArrayEquals(new String[] { "Physics", null, null, null }, table.getContents(enGB));
+        assertArrayEquals(new String[] { "Física", "Química", null, null }, table.getContents(Locale.forLanguageTag("pt")));
+
+        I18N.setLocale(enGB);
+        assertEquals("Química", table.getContent(1));
+        assertArrayEquals(new String[] { "Physics", "Química", "Matemáticas", null }, table.getContents());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRowOutOfBounds() {
+        LocalizedStringTable.builder().add(new LocalizedString(ptPT, "Física")).build().getContent(1, ptPT);
+    }
+
+    @Test
+    public void testSameAsRows() {
+        Locale[] locales = { ptPT, enGB, esES, Locale.forLanguageTag("pt"), Locale.forLanguageTag("en-US") };
+        Random random = new Random(42);
+        List<LocalizedString> strings = new ArrayList<>();
+        LocalizedStringTable.Builder builder = LocalizedStringTable.builder();
+        for (int i = 0; i < 1000; i++) {
+            LocalizedString.Builder string = new LocalizedString.Builder();
+            for (Locale locale : locales) {
+                if (random.nextInt(3) == 0) {
+                    string.with(locale, locale.toLanguageTag() + " " + i);
+                }
+            }
+            strings.add(string.build());
+            builder.add(string.build());
+        }
+        LocalizedStringTable table = builder.build();
+
+        assertEquals(strings, table.asList());
+        for (Locale requested : Arrays.asList(ptPT, enGB, esES, Locale.ENGLISH, Locale.forLanguageTag("fr-FR"))) {
+            I18N.setLocale(requested);
+            String[] contents = table.getContents(requested);
+            String[] defaults = table.getContents();
+            for (int row = 0; row < strings.size(); row++) {
+                assertEquals(strings.get(row).getContent(requested), contents[row]);
+                assertEquals(strings.get(row).getContent(requested), table.getContent(row, requested));
+                assertEquals(strings.get(row).getContent(), defaults[row]);
+                assertEquals(strings.get(row).getContent(), table.getContent(row));
+            }
+        }
+    }
+}
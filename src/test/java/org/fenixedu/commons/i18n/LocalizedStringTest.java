@@ -18,16 +18,41 @@
  */
 package org.fenixedu.commons.i18n;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
-
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
 public class LocalizedStringTest {
     private static final Locale pt = Locale.forLanguageTag("pt");
     private static final Locale ptPT = Locale.forLanguageTag("pt-PT");
@@ -35,6 +60,7 @@ public class LocalizedStringTest {
     private static final Locale enUS = Locale.forLanguageTag("en-US");
     private static final Locale esES = Locale.forLanguageTag("es-ES");
     private static final Locale ptBR = Locale.forLanguageTag("pt-BR");
+    private static final Locale zhTW = Locale.forLanguageTag("zh-Hant-TW");
 
     @BeforeClass
     public static void setupDefaultLocale() {
@@ -240,4 +266,353 @@ public class LocalizedStringTest {
 
         assertEquals(helloUpper, hello.map(String::toUpperCase));
     }
+
+    @Test
+    public void testSerialization() throws Exception {
+        LocalizedString hello = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(hello);
+            out.writeObject(new LocalizedString());
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            LocalizedString read = (LocalizedString) in.readObject();
+            assertEquals(hello, read);
+            assertEquals(hello.hashCode(), read.hashCode());
+            assertEquals("olá", read.getContent(ptPT));
+            assertTrue(((LocalizedString) in.readObject()).isEmpty());
+        }
+    }
+
+    @Test
+    public void testDeserializationOfPreviousFormat() throws Exception {
+        // pt-PT -> "olá", en-GB -> "hello", as written when translations were kept in a HashMap
+        String serialized = "rO0ABXNyAClvcmcuZmVuaXhlZHUuY29tbW9ucy5pMThuLkxvY2FsaXplZFN0cmluZ/+Obh/jAyZlAgABTAADbWFwdAA3TG9yZy9m"
+            + "ZW5peGVkdS9jb21tb25zL2kxOG4vTG9jYWxpemVkU3RyaW5nJEludGVybmFsTWFwO3hwc3IANW9yZy5mZW5peGVkdS5jb21tb25z"
+            + "LmkxOG4uTG9jYWxpemVkU3RyaW5nJEludGVybmFsTWFw2jjvhU70tOMCAAB4cgARamF2YS51dGlsLkhhc2hNYXAFB9rBwxZg0QMA"
+            + "AkYACmxvYWRGYWN0b3JJAAl0aHJlc2hvbGR4cD9AAAAAAAAMdwgAAAAQAAAAAnNyABBqYXZhLnV0aWwuTG9jYWxlfvgRYJww+ewD"
+            + "AAZJAAhoYXNoY29kZUwAB2NvdW50cnl0ABJMamF2YS9sYW5nL1N0cmluZztMAApleHRlbnNpb25zcQB+AAdMAAhsYW5ndWFnZXEA"
+            + "fgAHTAAGc2NyaXB0cQB+AAdMAAd2YXJpYW50cQB+AAd4cP////90AAJQVHQAAHQAAnB0cQB+AApxAH4ACnh0AARvbMOhc3EAfgAG"
+            + "/////3QAAkdCcQB+AAp0AAJlbnEAfgAKcQB+AAp4dAAFaGVsbG94";
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(serialized)))) {
+            LocalizedString read = (LocalizedString) in.readObject();
+            assertEquals(new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build(), read);
+            assertEquals("hello", read.getContent(enGB));
+        }
+    }
+
+    @Test
+    public void testBuiltInstanceIsIndependentFromBuilder() {
+        LocalizedString.Builder builder = new LocalizedString.Builder().with(ptPT, "olá");
+        LocalizedString hello = builder.build();
+        builder.with(enGB, "hello");
+        assertEquals(1, hello.getLocales().size());
+        assertEquals("{pt_PT=olá}", hello.toString());
+        assertEquals(new LocalizedString(ptPT, "olá").hashCode(), hello.hashCode());
+    }
+
+    @Test
+    public void testMemoizedFallbacks() {
+        Locale[] all = { pt, ptPT, ptBR, enGB, enUS, esES, Locale.ENGLISH, new Locale("pt", "PT", "POSIX"),
+                new Locale("en", "GB", "x"), Locale.forLanguageTag("zh-Hant-TW") };
+        for (int mask = 0; mask < 1 << 6; mask++) {
+            LocalizedString.Builder builder = new LocalizedString.Builder();
+            for (int i = 0; i < 6; i++) {
+                if ((mask & 1 << i) != 0) {
+                    builder.with(all[i], all[i].toLanguageTag());
+                }
+            }
+            LocaleSet locales = (LocaleSet) builder.build().getLocales();
+            for (int round = 0; round < 2; round++) {
+                for (Locale requested : all) {
+                    assertEquals(locales.indexFor(requested), locales.resolve(requested));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPooling() {
+        LocalizedStringPool.enable(1024);
+        try {
+            LocalizedString hello1 = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build();
+            LocalizedString hello2 = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build();
+            assertSame(hello1, hello2);
+            assertSame(hello1, LocalizedString.fromJson(hello1.json()));
+            assertSame(hello1.getContent(enGB), new LocalizedString(enGB, new String("hello")).getContent(enGB));
+
+            LocalizedStringPool.Statistics statistics = LocalizedStringPool.getStatistics();
+            assertTrue(statistics.getHits() > 0);
+            assertTrue(statistics.getBytesSaved() > 0);
+            assertTrue(statistics.getHitRatio() > 0);
+        } finally {
+            LocalizedStringPool.disable();
+        }
+        assertNotSame(new LocalizedString(enGB, "hello"), new LocalizedString(enGB, "hello"));
+    }
+
+    @Test
+    public void testTypeAdapter() {
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(LocalizedStringTypeAdapter.FACTORY).create();
+        LocalizedString hello =
+                new LocalizedString.Builder().with(ptPT, "olá <b>").with(enGB, "hello \"world\"").with(zhTW, "你好").build();
+        String json = gson.toJson(hello);
+        assertEquals(new Gson().toJson(hello.json()), json);
+        assertEquals(hello, gson.fromJson(json, LocalizedString.class));
+        assertEquals(LocalizedString.fromJson(new JsonParser().parse(json)), gson.fromJson(json, LocalizedString.class));
+
+        LocalizedString[] strings = { hello, null, new LocalizedString() };
+        String array = gson.toJson(strings);
+        assertEquals("[" + json + ",null,{}]", array);
+        assertArrayEquals(strings, gson.fromJson(array, LocalizedString[].class));
+
+        // A repeated key keeps its last value, and an empty one drops the translation
+        String repeated = "{\"pt-PT\":\"olá\",\"pt-PT\":\"\",\"es-ES\":\"hola\"}";
+        LocalizedString expected = LocalizedString.fromJson(new JsonParser().parse(repeated));
+        assertEquals(new LocalizedString(Locale.forLanguageTag("es-ES"), "hola"), expected);
+        assertEquals(expected, gson.fromJson(repeated, LocalizedString.class));
+        assertEquals(expected, LocalizedString.lazyFromJson(repeated));
+    }
+
+    @Test
+    public void testCollationSort() {
+        List<LocalizedString> strings = new ArrayList<>();
+        String[] words = { "Órgão", "orgão", "Engenharia", "Économie", "zebra", "Ábaco", "abaco", "Ângulo", "ensino", "" };
+        for (int i = 0; i < words.length; i++) {
+            strings.add(new LocalizedString.Builder().with(ptPT, words[i]).with(enGB, words[words.length - 1 - i]).build());
+        }
+        strings.add(new LocalizedString(esES, "España"));
+        strings.add(new LocalizedString());
+
+        for (Locale locale : new Locale[] { ptPT, enGB, esES, pt }) {
+            Locale previous = I18N.getLocale();
+            I18N.setLocale(locale);
+            List<LocalizedString> expected = new ArrayList<>(strings);
+            Collections.sort(expected);
+            I18N.setLocale(previous);
+
+            List<LocalizedString> sorted = new ArrayList<>(strings);
+            LocalizedString.sort(sorted, locale);
+            assertEquals(expected, sorted);
+
+            sorted = new ArrayList<>(strings);
+            sorted.sort(LocalizedString.comparator(locale));
+            assertEquals(expected, sorted);
+        }
+    }
+
+    @Test
+    public void testRepeatedAppends() {
+        LocalizedString.Builder builder = new LocalizedString.Builder().with(ptPT, "0").with(enGB, "0");
+        LocalizedString fragment = new LocalizedString.Builder().with(ptPT, "x").with(esES, "y").build();
+        StringBuilder pt = new StringBuilder("0"), en = new StringBuilder("0"), es = new StringBuilder();
+        for (int i = 1; i < 100; i++) {
+            builder.append(String.valueOf(i), ",");
+            pt.append(',').append(i);
+            en.append(',').append(i);
+            if (es.length() > 0) {
+                es.append(',').append(i);
+            }
+            if (i % 10 == 0) {
+                builder.append(fragment, "|");
+                pt.append("|x");
+                es.append(es.length() == 0 ? "y" : "|y");
+            }
+        }
+        LocalizedString built = builder.build();
+        assertEquals(pt.toString(), built.getContent(ptPT));
+        assertEquals(en.toString(), built.getContent(enGB));
+        assertEquals(es.toString(), built.getContent(esES));
+
+        builder.append("!").with(enGB, "reset");
+        assertEquals(en.toString(), built.getContent(enGB));
+        assertEquals(pt.toString(), built.getContent(ptPT));
+        assertEquals(pt.append('!').toString(), builder.build().getContent(ptPT));
+        assertEquals("reset", builder.build().getContent(enGB));
+    }
+
+    @Test
+    public void testImmutableModifiers() {
+        LocalizedString hello = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build();
+        assertEquals(hello.builder().with(esES, "hola").build(), hello.with(esES, "hola"));
+        assertEquals(hello.builder().with(enGB, "hi").build(), hello.with(enGB, "hi"));
+        assertEquals(hello, hello.with(esES, ""));
+        assertEquals(new LocalizedString(enGB, "hello"), hello.without(ptPT));
+        assertEquals(hello, hello.without(esES));
+        assertEquals(new LocalizedString.Builder().with(ptPT, "olá!").with(enGB, "hello!").build(), hello.append("!"));
+        assertEquals(new LocalizedString.Builder().with(ptPT, "olá olá").with(enGB, "hello hello").build(),
+                hello.append(hello, " "));
+    }
+
+    @Test
+    public void testCompactSerialization() throws Exception {
+        LocalizedString hello = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").build();
+        LocalizedString large = new LocalizedString(zhTW, Strings.repeat("你好", 40000));
+        List<LocalizedString> strings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            strings.add(hello.append(String.valueOf(i)));
+        }
+        strings.add(large);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(hello);
+        }
+        // The same string in the previous format took 489 bytes
+        assertTrue(bytes.size() < 150);
+
+        bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(strings));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(strings, in.readObject());
+        }
+    }
+
+    @Test
+    public void testCorruptedTextLength() throws Exception {
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                LocalizedStringSer.writeVarInt(out, length);
+                out.write(new byte[] { 'o', 'l', 'a' });
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                LocalizedStringSer.readText(in);
+                fail("Expected an exception for length " + length);
+            } catch (InvalidObjectException | EOFException e) {
+                assertEquals(length < 0, e instanceof InvalidObjectException);
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryCodec() {
+        LocalizedString hello = new LocalizedString.Builder().with(ptPT, "olá").with(enGB, "hello").with(zhTW, "你好").build();
+        byte[] encoded = LocalizedStringCodec.encode(hello);
+        assertEquals(LocalizedStringCodec.MAGIC, encoded[0]);
+        assertTrue(encoded.length < hello.json().toString().getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(hello, LocalizedStringCodec.decode(encoded));
+        assertEquals(new LocalizedString(), LocalizedStringCodec.decode(LocalizedStringCodec.encode(new LocalizedString())));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        LocalizedStringCodec.encode(hello, buffer);
+        LocalizedStringCodec.encode(hello.without(zhTW), buffer);
+        buffer.flip();
+        assertEquals(hello, LocalizedStringCodec.decode(buffer));
+        assertEquals(hello.without(zhTW), LocalizedStringCodec.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+
+        assertEquals(hello, LocalizedStringCodec.decode(hello.json().toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBinaryCodecTruncated() {
+        byte[] encoded = LocalizedStringCodec.encode(new LocalizedString(ptPT, "olá"));
+        LocalizedStringCodec.decode(Arrays.copyOf(encoded, encoded.length - 1));
+    }
+
+    @Test
+    public void testLazyFromJson() {
+        String[] jsons = { "{}", "{\"pt-PT\":\"olá\",\"en-GB\":\"hello\"}", "{\"en-US\":\"hi\",\"pt-BR\":\"oi\"}",
+                "{\"pt-PT\":\"olá\",\"pt-PT\":\"\",\"es-ES\":\"hola\"}", "{\"zh-Hant-TW\":\"你好\",\"pt\":\"olá\"}" };
+        Locale[] requested = { pt, ptPT, ptBR, enGB, enUS, esES, zhTW };
+        for (String json : jsons) {
+            LocalizedString eager = LocalizedString.fromJson(new JsonParser().parse(json));
+            for (Locale locale : requested) {
+                assertEquals(eager.getContent(locale), LocalizedString.lazyFromJson(json).getContent(locale));
+                assertEquals(eager.getContent(locale),
+                        LocalizedString.lazyFromJson(json.getBytes(StandardCharsets.UTF_8)).getContent(locale));
+            }
+            LocalizedString lazy = LocalizedString.lazyFromJson(json);
+            assertEquals(eager.getContent(), lazy.getContent());
+            assertEquals(eager.getContent(enUS), lazy.getContent(enUS));
+            assertEquals(eager, lazy);
+            assertEquals(eager.hashCode(), LocalizedString.lazyFromJson(json).hashCode());
+            assertEquals(eager.getLocales(), LocalizedString.lazyFromJson(json).getLocales());
+            assertEquals(eager.json(), LocalizedString.lazyFromJson(json).json());
+            assertEquals(eager.isEmpty(), LocalizedString.lazyFromJson(json).isEmpty());
+            assertEquals(eager.append("!"), LocalizedString.lazyFromJson(json).append("!"));
+            assertEquals(eager.builder().build(), LocalizedString.lazyFromJson(json).builder().build());
+            assertEquals(LocalizedString.lazyFromJson(json), eager);
+        }
+    }
+
+    @Test
+    public void testHashCodeAndEquals() {
+        LocalizedString string = new LocalizedString(ptPT, "olá").with(enGB, "hello");
+        assertEquals(string.hashCode(), string.hashCode());
+        assertEquals(0, new LocalizedString().hashCode());
+
+        LocalizedString same = new LocalizedString(enGB, "hello").with(ptPT, "olá");
+        LocalizedString other = new LocalizedString(ptPT, "olá").with(enGB, "hi");
+        assertEquals(string, same);
+        // Cached hash codes are compared before the translations
+        string.hashCode();
+        other.hashCode();
+        assertNotEquals(string, other);
+        assertEquals(string, same);
+        assertNotEquals(string, new LocalizedString(ptPT, "olá"));
+        assertNotEquals(string, new LocalizedString(ptPT, "olá").with(esES, "hello"));
+
+        HashSet<LocalizedString> set = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            set.add(new LocalizedString(ptPT, "olá " + i % 10).with(enGB, "hello " + i % 10));
+        }
+        assertEquals(10, set.size());
+        assertTrue(set.contains(new LocalizedString(enGB, "hello 3").with(ptPT, "olá 3")));
+        assertTrue(set.contains(LocalizedString.lazyFromJson("{\"pt-PT\":\"olá 7\",\"en-GB\":\"hello 7\"}")));
+
+        HashSet<Integer> hashes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            hashes.add(new LocalizedString(ptPT, "Unidade " + i).with(enGB, "Unit " + i).hashCode());
+        }
+        assertEquals(1000, hashes.size());
+    }
+
+    @Test
+    public void testFallbackStrategy() {
+        Locale es = Locale.forLanguageTag("es");
+        LocalizedString portuguese = new LocalizedString(ptPT, "olá").with(enGB, "hello");
+        LocalizedString english = new LocalizedString(enGB, "hello");
+        assertEquals("hello", portuguese.getContent(esES));
+        try {
+            LocalizedString.setFallbackStrategy(LocaleFallbackStrategy.builder().fallback(es, pt).fallback(pt, enGB).build());
+            assertEquals("olá", portuguese.getContent(esES));
+            assertEquals("hello", english.getContent(esES));
+            assertEquals("hola", portuguese.with(esES, "hola").getContent(esES));
+            assertEquals("olá", portuguese.getContent(ptBR));
+
+            I18N.setLocale(esES);
+            assertEquals("olá", portuguese.getContent());
+            I18N.setLocale(null);
+
+            LocalizedString.setFallbackStrategy(new LocaleFallbackStrategy() {
+                @Override
+                public Locale select(Locale requested, Set<Locale> available) {
+                    return available.contains(enGB) ? enGB : null;
+                }
+            });
+            assertEquals("hello", portuguese.getContent(ptBR));
+            assertEquals("olá", portuguese.getContent(ptPT));
+            assertEquals(ptPT, LocaleFallbackStrategy.DEFAULT.select(ptBR, portuguese.getLocales()));
+            assertNull(LocaleFallbackStrategy.DEFAULT.select(zhTW, Collections.singleton(esES)));
+
+            // Arbitrary sets are resolved without registering their locales
+            int registered = LocaleRegistry.size();
+            Locale gl = Locale.forLanguageTag("gl");
+            Set<Locale> available = new HashSet<>(Arrays.asList(esES, gl, Locale.forLanguageTag("eu-FR")));
+            assertEquals(gl, LocaleFallbackStrategy.DEFAULT.select(Locale.forLanguageTag("gl-ES"), available));
+            assertEquals(esES, LocaleFallbackStrategy.builder().fallback(Locale.forLanguageTag("ast"), gl, esES).build()
+                    .select(Locale.forLanguageTag("ast-ES"), Collections.singleton(esES)));
+            assertEquals(gl, LocaleFallbackStrategy.builder().fallback(Locale.forLanguageTag("ast"), gl, esES).build()
+                    .select(Locale.forLanguageTag("ast-ES"), available));
+            assertEquals(registered, LocaleRegistry.size());
+        } finally {
+            LocalizedString.setFallbackStrategy(LocaleFallbackStrategy.DEFAULT);
+        }
+        assertEquals("hello", portuguese.getContent(esES));
+        assertEquals("olá", portuguese.getContent(ptBR));
+    }
 }
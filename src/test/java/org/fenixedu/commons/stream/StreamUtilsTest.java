@@ -2,6 +2,16 @@ package org.fenixedu.commons.stream;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.Test;
@@ -11,6 +21,9 @@ import org.junit.runners.JUnit4;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 @RunWith(JUnit4.class)
 public class StreamUtilsTest {
@@ -36,4 +49,76 @@ public class StreamUtilsTest {
 
         assertEquals(array, StreamUtils.of(array).collect(StreamUtils.toJsonArray()));
     }
+
+    private static final BiConsumer<JsonObject, String> FILLER = (json, name) -> {
+        json.addProperty("name", name);
+        json.addProperty("length", name.length());
+    };
+
+    private static final BiConsumer<JsonWriter, String> WRITER = (json, name) -> {
+        try {
+            json.beginObject().name("name").value(name).name("length").value(name.length()).endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    };
+
+    @Test
+    public void testWriteJsonArray() throws IOException {
+        List<String> names = Arrays.asList("João", "Maria \"Zé\"", "");
+        String expected = StreamUtils.toJsonArray(FILLER, names).toString();
+
+        StringWriter writer = new StringWriter();
+        StreamUtils.writeJsonArray(WRITER, names.stream(), writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamUtils.writeJsonArray(WRITER, names.stream(), bytes);
+        assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        writer = new StringWriter();
+        StreamUtils.writeJsonArray(WRITER, Stream.<String> empty(), writer);
+        assertEquals("[]", writer.toString());
+    }
+
+    @Test
+    public void testWriteJsonArrayWithAdapter() throws IOException {
+        TypeAdapter<Integer> adapter = new TypeAdapter<Integer>() {
+            @Override
+            public void write(JsonWriter out, Integer value) throws IOException {
+                out.value(value * 2);
+            }
+
+            @Override
+            public Integer read(JsonReader in) throws IOException {
+                throw new UnsupportedOperationException();
+            }
+        };
+        StringWriter writer = new StringWriter();
+        StreamUtils.writeJsonArray(adapter, IntStream.range(0, 4).boxed(), writer);
+        assertEquals("[0,2,4,6]", writer.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamUtils.writeJsonArray(adapter, Stream.of(21), bytes);
+        assertEquals("[42]", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteJsonArrayFailure() throws IOException {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        StreamUtils.writeJsonArray(WRITER, Stream.of("João"), failing);
+    }
 }